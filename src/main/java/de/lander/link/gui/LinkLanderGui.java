@@ -3,6 +3,7 @@ package de.lander.link.gui;
 
 import javax.inject.Inject;
 
+import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
 import com.vaadin.cdi.CDIUI;
 import com.vaadin.server.VaadinRequest;
@@ -15,6 +16,8 @@ import de.lander.link.gui.components.SearchComponentUser;
 
 @CDIUI("linklander-ui")
 @Theme("mytheme")
+// Search results are computed in the background and pushed
+@Push
 @SuppressWarnings("serial")
 public class LinkLanderGui extends UI {
 
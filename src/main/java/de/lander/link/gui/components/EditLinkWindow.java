@@ -12,6 +12,7 @@ import com.vaadin.ui.UI;
 import com.vaadin.ui.Window;
 
 import de.lander.link.gui.components.tag.SelectTagWindow;
+import de.lander.persistence.daos.Batch;
 import de.lander.persistence.daos.PersistenceGateway;
 import de.lander.persistence.entities.Link;
 import de.lander.persistence.entities.Tag;
@@ -161,25 +162,28 @@ public class EditLinkWindow extends Window {
 	}
 
 	private void saveLink() {
+		// All changes in one transaction
+		Batch batch = persistence.batch();
 		if (existingLinkId == null) {
 			// New Link
-			String linkUUID = persistence.addLink(nameField.getValue(), urlField.getValue(), titleField.getValue());
+			String linkUUID = batch.addLink(nameField.getValue(), urlField.getValue(), titleField.getValue());
 			for (String tagUUID : addedTags) {
-				persistence.addTagToLink(linkUUID, tagUUID);
+				batch.addTagToLink(linkUUID, tagUUID);
 			}
 		} else {
 			// Update Link
-			persistence.setLinkPropertyValue(existingLinkId, Link.NAME, nameField.getValue());
-			persistence.setLinkPropertyValue(existingLinkId, Link.URL, urlField.getValue());
-			persistence.setLinkPropertyValue(existingLinkId, Link.TITLE, titleField.getValue());
+			batch.setLinkPropertyValue(existingLinkId, Link.NAME, nameField.getValue());
+			batch.setLinkPropertyValue(existingLinkId, Link.URL, urlField.getValue());
+			batch.setLinkPropertyValue(existingLinkId, Link.TITLE, titleField.getValue());
 
 			for (String tagUUID : addedTags) {
-				persistence.addTagToLink(existingLinkId, tagUUID);
+				batch.addTagToLink(existingLinkId, tagUUID);
 			}
 			for (String tagUUID : removedTags) {
-				persistence.removeTagFromLink(existingLinkId, tagUUID);
+				batch.removeTagFromLink(existingLinkId, tagUUID);
 			}
 		}
+		batch.commit();
 
 		if (saveCallback != null) {
 			saveCallback.accept(existingLinkId);
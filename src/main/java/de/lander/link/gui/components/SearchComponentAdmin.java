@@ -19,6 +19,7 @@ import com.vaadin.ui.Window;
 import com.vaadin.ui.Window.CloseEvent;
 
 import de.lander.link.gui.components.tag.SelectTagWindow;
+import de.lander.persistence.daos.Batch;
 import de.lander.persistence.entities.Link;
 import de.lander.persistence.entities.Tag;
 
@@ -69,7 +70,7 @@ public class SearchComponentAdmin extends SearchComponentBase {
 		Button deleteButton = new Button();
 		deleteButton.addClickListener(event -> {
 			persistenceGatewayImpl.deleteLink(link.getUuid());
-			this.links.removeItem(link.getUuid());
+			doSearch();
 		});
 		deleteButton.setCaption("delete");
 		list.add(deleteButton);
@@ -97,7 +98,8 @@ public class SearchComponentAdmin extends SearchComponentBase {
 					public void windowClose(CloseEvent e) {
 						newSelectedTagUUIDs.addAll(selectTagWindow.getSelectedTagUUIDs());
 						
-						// Store modifications in the database
+						// Store modifications in the database, in one transaction
+						Batch batch = persistenceGatewayImpl.batch();
 						
 						//// 1) Add added Tags
 						HashSet<String> addedTags = new HashSet<String>(newSelectedTagUUIDs);
@@ -105,7 +107,7 @@ public class SearchComponentAdmin extends SearchComponentBase {
 						LOGGER.trace("Link["+linkUUID+"] - Adding tags:"+addedTags);
 						
 						for (String addedTagUUID : addedTags) {
-							persistenceGatewayImpl.addTagToLink(linkUUID, addedTagUUID);
+							batch.addTagToLink(linkUUID, addedTagUUID);
 						}
 						
 						//// 2) Remove removed tags
@@ -114,8 +116,9 @@ public class SearchComponentAdmin extends SearchComponentBase {
 						LOGGER.trace("Link["+linkUUID+"] - Removing tags:"+removedTags);
 						
 						for (String removedTagUUID : removedTags) {
-							persistenceGatewayImpl.removeTagFromLink(linkUUID, removedTagUUID);
+							batch.removeTagFromLink(linkUUID, removedTagUUID);
 						}
+						batch.commit();
 						
 						//Update data
 						if (addedTags.size() > 0 || removedTags.size() > 0) {
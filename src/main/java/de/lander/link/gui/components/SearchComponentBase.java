@@ -1,11 +1,8 @@
 package de.lander.link.gui.components;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.Future;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -27,16 +24,22 @@ import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Table;
 import com.vaadin.ui.Table.ColumnHeaderMode;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.BaseTheme;
 
 import de.lander.link.gui.logic.AdvancedSearch.Advanced;
+import de.lander.link.gui.logic.RefiningSearch;
+import de.lander.link.gui.logic.RelevanceModel;
+import de.lander.link.gui.logic.SearchExecutor;
 import de.lander.link.gui.logic.SearchHit;
-import de.lander.link.gui.logic.SearchHitComparator;
 import de.lander.link.gui.logic.SearchProvider;
+import de.lander.link.gui.logic.SearchResultCache;
+import de.lander.link.gui.logic.Suggestion;
+import de.lander.link.gui.logic.SuggestionService;
 import de.lander.persistence.daos.PersistenceGateway;
 import de.lander.persistence.entities.Link;
-import de.lander.persistence.entities.Tag;
 
 /**
  * Base class for all search components Offers input field, result table,
@@ -49,7 +52,30 @@ public abstract class SearchComponentBase extends CustomComponent {
 
 	private static final long serialVersionUID = 242479147429347833L;
 
+	/**
+	 * The number of suggestions shown below the input field
+	 */
+	private static final int SUGGESTION_COUNT = 5;
+	/**
+	 * The number of hits loaded at once by the result table
+	 */
+	private static final int RESULT_PAGE_SIZE = 50;
+	/**
+	 * The number of rows visible without scrolling
+	 */
+	private static final int RESULT_PAGE_LENGTH = 20;
+
 	private VerticalLayout verticalLayout;
+	private VerticalLayout suggestions;
+	private SearchResultContainer searchResult;
+	/** Narrows the last result of this UI while the search text is extended */
+	private RefiningSearch refiningSearch;
+	/** The search in the background, the latest one is shown only */
+	private transient Future<?> runningSearch;
+	private int searchSequence = 0;
+	/** The link components of the row rendered last, see getLinkComponent */
+	private Object linkComponentsItemId;
+	private List<Component> linkComponents;
 	@Inject
 	private Logger LOGGER;
 
@@ -63,9 +89,19 @@ public abstract class SearchComponentBase extends CustomComponent {
 	@Inject
 	@Advanced
 	private SearchProvider searchProvider;
+	@Inject
+	private SuggestionService suggestionService;
+	@Inject
+	private SearchExecutor searchExecutor;
+	@Inject
+	private RelevanceModel relevanceModel;
+	@Inject
+	private SearchResultCache resultCache;
 
 	@PostConstruct
 	public void postConstruct() {
+		refiningSearch = new RefiningSearch(searchProvider, persistenceGatewayImpl, relevanceModel, resultCache);
+		searchResult.setSearchProvider(refiningSearch);
 		// Initialize table to show all links
 		performSearch("");
 	}
@@ -87,6 +123,7 @@ public abstract class SearchComponentBase extends CustomComponent {
 	private void addListeners() {
 		// Search with each event
 		input.addTextChangeListener(event -> {
+			this.showSuggestions(event.getText());
 			this.performSearch(event.getText());
 		});
 	}
@@ -106,12 +143,18 @@ public abstract class SearchComponentBase extends CustomComponent {
 		input.setHeight("-1px");
 		verticalLayout.addComponent(input);
 
+		// suggestions
+		suggestions = new VerticalLayout();
+		suggestions.setWidth("100.0%");
+		suggestions.setVisible(false);
+		verticalLayout.addComponent(suggestions);
+
 		// links
 		links = new Table();
 		links.setImmediate(false);
 		links.setWidth("100.0%");
-		// Important to avoid "the thin grey table bottom line"
-		links.setPageLength(0);
+		// Rows are rendered, and hits loaded, only while they are scrolled to
+		links.setPageLength(RESULT_PAGE_LENGTH);
 		links.setVisible(false);
 		verticalLayout.addComponent(links);
 
@@ -123,19 +166,38 @@ public abstract class SearchComponentBase extends CustomComponent {
 		input.setTextChangeEventMode(TextChangeEventMode.LAZY);
 
 		links.setColumnCollapsingAllowed(true);
-		// Result table
-		links.addContainerProperty("id", String.class, null);
-		setColumnVisibility("id", false);
-		links.addContainerProperty("name", String.class, null);
-		links.addContainerProperty("link", Component.class, null);
-		links.addContainerProperty("tags", String.class, null);
-		links.addContainerProperty("clickCount", String.class, null);
-		setColumnVisibility("clickCount", false);
+		// Result table, the components are generated for the rendered rows
+		// only
+		searchResult = new SearchResultContainer(RESULT_PAGE_SIZE);
+		// the links of a new item set may have been edited, registered before
+		// the table which renders the rows when notified
+		searchResult.addItemSetChangeListener(event -> {
+			linkComponentsItemId = null;
+			linkComponents = null;
+		});
+		links.setContainerDataSource(searchResult);
+		links.addGeneratedColumn("link", (source, itemId, columnId) -> {
+			SearchHit hit = searchResult.getHit(itemId);
+			return hit == null ? null : getLayoutLink(hit.getLink());
+		});
+
+		List<Object> visibleColumns = new ArrayList<Object>();
+		visibleColumns.add(SearchResultContainer.ID);
+		visibleColumns.add(SearchResultContainer.NAME);
+		visibleColumns.add("link");
+		visibleColumns.add(SearchResultContainer.TAGS);
+		visibleColumns.add(SearchResultContainer.CLICK_COUNT);
 
 		List<String> linkButtonComponentNames = getLinkComponentNames();
-		for (String componentName : linkButtonComponentNames) {
-			links.addContainerProperty(componentName, Component.class, null);
+		for (int i = 0; i < linkButtonComponentNames.size(); i++) {
+			int componentIndex = i;
+			links.addGeneratedColumn(linkButtonComponentNames.get(i),
+					(source, itemId, columnId) -> getLinkComponent(itemId, componentIndex));
+			visibleColumns.add(linkButtonComponentNames.get(i));
 		}
+		links.setVisibleColumns(visibleColumns.toArray());
+		setColumnVisibility(SearchResultContainer.ID, false);
+		setColumnVisibility(SearchResultContainer.CLICK_COUNT, false);
 
 		links.setWidth("100%");
 		// TODO: Work on the column width/scaling
@@ -152,68 +214,109 @@ public abstract class SearchComponentBase extends CustomComponent {
 	}
 
 	protected void doSearch() {
+		// links may have changed, the last result can't be refined
+		refiningSearch.reset();
 		performSearch(input.getValue());
 	}
 
+	/**
+	 * Searches in the background and pushes the first page of the result to
+	 * the table, the table asks for further pages on scrolling<br>
+	 * A newer search cancels the previous one: if it is still queued it never
+	 * runs, if it is running already its result is dropped. Running searches
+	 * are not interrupted, an interrupt closes the store files of neo4j.
+	 * 
+	 * @param searchText
+	 */
 	protected void performSearch(String searchText) {
-		Set<SearchHit> searchResult = searchProvider.performSearch(searchText);
-
-		links.removeAllItems();
+		UI ui = getUI();
+		if (ui == null) {
+			// Not attached yet, e.g. the initial search, nothing to push to
+			searchResult.search(searchText);
+			return;
+		}
 
-		List<SearchHit> sortedResult = searchResult.stream().sorted(SearchHitComparator.get())
-				.collect(Collectors.toList());
+		if (runningSearch != null) {
+			runningSearch.cancel(false);
+		}
+		int sequence = ++searchSequence;
+		runningSearch = searchExecutor.submit(() -> {
+			try {
+				// refines the result shown without replacing it, the table may
+				// still load pages of the shown text meanwhile
+				RefiningSearch.PreparedSearch search = refiningSearch.prepare(searchText, RESULT_PAGE_SIZE);
+				ui.access(() -> {
+					if (sequence == searchSequence) {
+						refiningSearch.commit(search);
+						searchResult.showResult(searchText, search.getFirstPage());
+					}
+				});
+			} catch (UIDetachedException e) {
+				// The user left, nobody waits for the result
+			} catch (RuntimeException e) {
+				LOGGER.error("Error searching for '" + searchText + "'", e);
+			}
+		});
+	}
 
-		for (int i = 0; i < sortedResult.size(); i++) {
-			Object[] tableValues = convertLinkToTableData(sortedResult.get(i).getLink(), sortedResult.get(i).getTags());
-			// Use the UUID for objectId, e.g. to delete the row later
-			links.addItem(tableValues, sortedResult.get(i).getLink().getUuid());
+	/**
+	 * Shows the links and tags completing the typed text below the input
+	 * field, a tag suggestion replaces the text with the tag name
+	 * 
+	 * @param searchText
+	 */
+	protected void showSuggestions(String searchText) {
+		suggestions.removeAllComponents();
+
+		List<Suggestion> completions = suggestionService.suggest(searchText, SUGGESTION_COUNT);
+		for (Suggestion suggestion : completions) {
+			if (suggestion.getType() == Suggestion.Type.LINK) {
+				suggestions.addComponent(
+						getLayoutLink(suggestion.getUuid(), suggestion.getUrl(), suggestion.getText()));
+			} else {
+				Button suggestedTag = new Button(suggestion.getText());
+				suggestedTag.setStyleName(BaseTheme.BUTTON_LINK);
+				suggestedTag.addClickListener(event -> {
+					input.setValue(suggestion.getText());
+					suggestions.setVisible(false);
+					doSearch();
+				});
+				suggestions.addComponent(suggestedTag);
+			}
 		}
+		suggestions.setVisible(!completions.isEmpty());
 	}
 
 	protected abstract List<Component> getLinkComponents(Link link);
 
-	private Object[] convertLinkToTableData(Link linkEntity, Collection<Tag> tagsForLink) {
-		// Create a Vaading HTTP clickable link
-		// ActiveLink externalLink = getActiveLinkLink(linkEntity);
-		// Button externalLink = getButtonLink(linkEntity);
-		Component externalLink = getLayoutLink(linkEntity);
-
-		// Get the additional components for each link -> See concrete
-		// implementation
-		List<Component> linkComponents = getLinkComponents(linkEntity);
-
-		// Build Vaadin table object array
-		ArrayList<Object> list = new ArrayList<Object>();
-		list.add(linkEntity.getUuid());
-		list.add(linkEntity.getName());
-		list.add(externalLink);
-
-		// Add the tags, sorted alphabetically
-		List<String> tags = tagsForLink.stream().map(t -> t.getName()).collect(Collectors.toList());
-		Collections.sort(tags, String.CASE_INSENSITIVE_ORDER);
-		String output = "";
-		for (int i = 0; i < tags.size(); i++) {
-			if (i > 0) {
-				output += ", ";
+	/**
+	 * The table generates the columns of a row one after another, so the link
+	 * components are created once per row
+	 */
+	private Component getLinkComponent(Object itemId, int componentIndex) {
+		if (!itemId.equals(linkComponentsItemId)) {
+			SearchHit hit = searchResult.getHit(itemId);
+			if (hit == null) {
+				return null;
 			}
-			output += tags.get(i);
+			// Get the additional components for each link -> See concrete
+			// implementation
+			linkComponents = getLinkComponents(hit.getLink());
+			linkComponentsItemId = itemId;
 		}
-		list.add(output);
-		
-		list.add(linkEntity.getClicks()+"");
-
-		// Finally all components for the links
-		list.addAll(linkComponents);
-
-		return list.toArray();
+		return linkComponents.get(componentIndex);
 	}
 
 	private Component getLayoutLink(Link linkEntity) {
+		return getLayoutLink(linkEntity.getUuid(), linkEntity.getUrl(), linkEntity.getUrl());
+	}
+
+	private Component getLayoutLink(String uuid, String url, String caption) {
 		com.vaadin.ui.Link externalLink = new com.vaadin.ui.Link();
 		externalLink.setTargetName("_blank");
-		externalLink.setResource(new ExternalResource(linkEntity.getUrl()));
-		externalLink.setCaption(linkEntity.getUrl());
-		externalLink.setData(linkEntity.getUuid());
+		externalLink.setResource(new ExternalResource(url));
+		externalLink.setCaption(caption);
+		externalLink.setData(uuid);
 
 		HorizontalLayout layout = new HorizontalLayout(externalLink);
 		layout.addLayoutClickListener(event -> {
@@ -48,7 +48,7 @@ public class SearchComponentUser extends SearchComponentBase {
 		Button deleteButton = new Button();
 		deleteButton.addClickListener(event -> {
 			persistenceGatewayImpl.deleteLink(link.getUuid());
-			this.links.removeItem(link.getUuid());
+			doSearch();
 		});
 		deleteButton.setCaption("delete");
 		list.add(deleteButton);
@@ -0,0 +1,375 @@
+package de.lander.link.gui.components;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.AbstractContainer;
+import com.vaadin.data.util.ObjectProperty;
+import com.vaadin.data.util.PropertysetItem;
+
+import de.lander.link.gui.logic.SearchHit;
+import de.lander.link.gui.logic.SearchProvider;
+import de.lander.link.gui.logic.SearchResult;
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Read-only container of the hits of a search, loading pages of hits from the
+ * {@link SearchProvider} on demand<br>
+ * The table only asks for the rows it renders, so only a few pages are loaded
+ * per search and the oldest pages are dropped. The item ids are the link
+ * uuids. Components per row belong into generated columns of the table, see
+ * {@link #getHit(Object)}.
+ *
+ * @author max
+ *
+ */
+public class SearchResultContainer extends AbstractContainer
+		implements Container.Indexed, Container.ItemSetChangeNotifier {
+
+	private static final long serialVersionUID = -2618846519839214413L;
+
+	public static final String ID = "id";
+	public static final String NAME = "name";
+	public static final String TAGS = "tags";
+	public static final String CLICK_COUNT = "clickCount";
+
+	private static final List<String> PROPERTY_IDS = Collections
+			.unmodifiableList(Arrays.asList(ID, NAME, TAGS, CLICK_COUNT));
+
+	/**
+	 * The number of pages kept per search
+	 */
+	private static final int CACHED_PAGES = 8;
+
+	private final int pageSize;
+	private SearchProvider searchProvider;
+
+	private String searchText = "";
+	private int size = 0;
+	/** Loaded pages by page number, least recently used first */
+	private final Map<Integer, List<SearchHit>> pages = new LinkedHashMap<Integer, List<SearchHit>>(16, 0.75f,
+			true);
+	/** Index of the hits of the loaded pages by link uuid */
+	private final Map<Object, Integer> indexes = new HashMap<Object, Integer>();
+
+	/**
+	 * Creates an empty container, see {@link #setSearchProvider(SearchProvider)}
+	 *
+	 * @param pageSize
+	 *            the number of hits loaded at once
+	 */
+	public SearchResultContainer(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @param searchProvider
+	 *            the search to load the pages from, used from the next
+	 *            {@link #search(String)} on
+	 */
+	public void setSearchProvider(SearchProvider searchProvider) {
+		this.searchProvider = searchProvider;
+	}
+
+	/**
+	 * Starts a new search, loads its first page and notifies the table
+	 *
+	 * @param searchText
+	 *            the search text
+	 */
+	public void search(String searchText) {
+		this.searchText = searchText;
+		refresh();
+	}
+
+	/**
+	 * Repeats the current search, e.g. after a link was changed
+	 */
+	public void refresh() {
+		pages.clear();
+		indexes.clear();
+		size = loadPage(0).getTotalHits();
+		fireItemSetChange();
+	}
+
+	/**
+	 * Shows a search whose first page was searched already and notifies the
+	 * table
+	 *
+	 * @param searchText
+	 *            the search text
+	 * @param firstPage
+	 *            the first page of the search, searched in the background
+	 */
+	public void showResult(String searchText, SearchResult firstPage) {
+		this.searchText = searchText;
+		pages.clear();
+		indexes.clear();
+		putPage(0, firstPage.getHits());
+		size = firstPage.getTotalHits();
+		fireItemSetChange();
+	}
+
+	/**
+	 * @param itemId
+	 *            the link uuid
+	 * @return the hit of a loaded row, <code>null</code> if it is not loaded
+	 */
+	public SearchHit getHit(Object itemId) {
+		Integer index = indexes.get(itemId);
+		if (index == null) {
+			return null;
+		}
+		return getPage(index / pageSize).get(index % pageSize);
+	}
+
+	private List<SearchHit> getPage(int page) {
+		List<SearchHit> hits = pages.get(page);
+		if (hits == null) {
+			hits = loadPage(page).getHits();
+		}
+		return hits;
+	}
+
+	private SearchResult loadPage(int page) {
+		SearchResult result = searchProvider.performSearch(searchText, page * pageSize, pageSize);
+
+		if (pages.size() >= CACHED_PAGES) {
+			Iterator<Map.Entry<Integer, List<SearchHit>>> eldest = pages.entrySet().iterator();
+			Map.Entry<Integer, List<SearchHit>> evicted = eldest.next();
+			List<SearchHit> evictedHits = evicted.getValue();
+			for (int i = 0; i < evictedHits.size(); i++) {
+				// a link moved by changed data may be shown in a newer page
+				indexes.remove(evictedHits.get(i).getLink().getUuid(), evicted.getKey() * pageSize + i);
+			}
+			eldest.remove();
+		}
+
+		putPage(page, result.getHits());
+		return result;
+	}
+
+	private void putPage(int page, List<SearchHit> hits) {
+		pages.put(page, hits);
+		for (int i = 0; i < hits.size(); i++) {
+			indexes.put(hits.get(i).getLink().getUuid(), page * pageSize + i);
+		}
+	}
+
+	private Item toItem(SearchHit hit) {
+		Link link = hit.getLink();
+		// Tags sorted alphabetically
+		String tags = hit.getTags().stream().map(Tag::getName).sorted(String.CASE_INSENSITIVE_ORDER)
+				.collect(Collectors.joining(", "));
+
+		PropertysetItem item = new PropertysetItem();
+		item.addItemProperty(ID, new ObjectProperty<String>(link.getUuid(), String.class, true));
+		item.addItemProperty(NAME, new ObjectProperty<String>(link.getName(), String.class, true));
+		item.addItemProperty(TAGS, new ObjectProperty<String>(tags, String.class, true));
+		item.addItemProperty(CLICK_COUNT,
+				new ObjectProperty<String>(String.valueOf(link.getClicks()), String.class, true));
+		return item;
+	}
+
+	// /////////////
+	// CONTAINER
+	// /////////////
+
+	@Override
+	public Item getItem(Object itemId) {
+		SearchHit hit = getHit(itemId);
+		return hit == null ? null : toItem(hit);
+	}
+
+	@Override
+	public Collection<?> getContainerPropertyIds() {
+		return PROPERTY_IDS;
+	}
+
+	/**
+	 * Loads all hits of the search, the table does not need this
+	 */
+	@Override
+	public Collection<?> getItemIds() {
+		return getItemIds(0, size);
+	}
+
+	@Override
+	public Property<?> getContainerProperty(Object itemId, Object propertyId) {
+		Item item = getItem(itemId);
+		return item == null ? null : item.getItemProperty(propertyId);
+	}
+
+	@Override
+	public Class<?> getType(Object propertyId) {
+		return PROPERTY_IDS.contains(propertyId) ? String.class : null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsId(Object itemId) {
+		return indexes.containsKey(itemId);
+	}
+
+	@Override
+	public int indexOfId(Object itemId) {
+		Integer index = indexes.get(itemId);
+		return index == null ? -1 : index;
+	}
+
+	@Override
+	public Object getIdByIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " not within 0 and " + size);
+		}
+		List<SearchHit> page = getPage(index / pageSize);
+		int inPage = index % pageSize;
+		// the result may have shrunk since the size was read
+		return inPage < page.size() ? page.get(inPage).getLink().getUuid() : null;
+	}
+
+	@Override
+	public List<?> getItemIds(int startIndex, int numberOfItems) {
+		if (numberOfItems < 0) {
+			throw new IllegalArgumentException("Cannot get a negative number of items: " + numberOfItems);
+		}
+		List<Object> itemIds = new ArrayList<Object>();
+		int endIndex = Math.min(startIndex + numberOfItems, size);
+		for (int index = startIndex; index < endIndex; index++) {
+			Object itemId = getIdByIndex(index);
+			if (itemId == null) {
+				break;
+			}
+			itemIds.add(itemId);
+		}
+		return itemIds;
+	}
+
+	@Override
+	public Object nextItemId(Object itemId) {
+		int index = indexOfId(itemId);
+		return index < 0 || index + 1 >= size ? null : getIdByIndex(index + 1);
+	}
+
+	@Override
+	public Object prevItemId(Object itemId) {
+		int index = indexOfId(itemId);
+		return index <= 0 ? null : getIdByIndex(index - 1);
+	}
+
+	@Override
+	public Object firstItemId() {
+		return size == 0 ? null : getIdByIndex(0);
+	}
+
+	@Override
+	public Object lastItemId() {
+		return size == 0 ? null : getIdByIndex(size - 1);
+	}
+
+	@Override
+	public boolean isFirstId(Object itemId) {
+		return itemId != null && indexOfId(itemId) == 0;
+	}
+
+	@Override
+	public boolean isLastId(Object itemId) {
+		return itemId != null && indexOfId(itemId) == size - 1;
+	}
+
+	// /////////////
+	// NOTIFIER
+	// /////////////
+
+	@Override
+	public void addItemSetChangeListener(Container.ItemSetChangeListener listener) {
+		super.addItemSetChangeListener(listener);
+	}
+
+	@Override
+	@Deprecated
+	public void addListener(Container.ItemSetChangeListener listener) {
+		super.addItemSetChangeListener(listener);
+	}
+
+	@Override
+	public void removeItemSetChangeListener(Container.ItemSetChangeListener listener) {
+		super.removeItemSetChangeListener(listener);
+	}
+
+	@Override
+	@Deprecated
+	public void removeListener(Container.ItemSetChangeListener listener) {
+		super.removeItemSetChangeListener(listener);
+	}
+
+	// /////////////
+	// READ-ONLY
+	// /////////////
+
+	@Override
+	public Item addItem(Object itemId) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public Object addItem() {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public boolean removeItem(Object itemId) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public boolean removeAllItems() {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public boolean addContainerProperty(Object propertyId, Class<?> type, Object defaultValue) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public boolean removeContainerProperty(Object propertyId) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public Object addItemAfter(Object previousItemId) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public Item addItemAfter(Object previousItemId, Object newItemId) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public Object addItemAt(int index) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+
+	@Override
+	public Item addItemAt(int index, Object newItemId) {
+		throw new UnsupportedOperationException("Search results are read-only");
+	}
+}
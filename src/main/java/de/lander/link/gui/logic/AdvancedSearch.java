@@ -9,12 +9,16 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.inject.Inject;
 import javax.inject.Qualifier;
@@ -38,63 +42,155 @@ public class AdvancedSearch implements SearchProvider {
 	@Inject
 	protected PersistenceGateway persistenceGatewayImpl;
 	@Inject
+	private SearchResultCache resultCache;
+	@Inject
+	private LookupExecutor lookupExecutor;
+	@Inject
+	private RelevanceModel relevanceModel;
+	@Inject
 	private Logger LOGGER;
 
 	public Set<SearchHit> performSearch(final String searchTextInput) {
+		Map<String, SearchHit> hits = collectHits(searchTextInput);
+		addTags(hits.values());
+
+		LOGGER.debug("Returning " + hits.size() + " results for search text '" + searchTextInput.trim() + "'");
+		return new HashSet<SearchHit>(hits.values());
+	}
+
+	@Override
+	public SearchResult performSearch(final String searchTextInput, final int offset, final int limit) {
+		Map<String, SearchHit> hits = collectHits(searchTextInput);
+		SearchResult result = TopHits.toResult(hits.values(), offset, limit);
+		// Tags are only needed for the hits shown
+		addTags(result.getHits());
+
+		LOGGER.debug("Returning " + result.getHits().size() + " of " + result.getTotalHits()
+				+ " results for search text '" + searchTextInput.trim() + "'");
+		return result;
+	}
+
+	@Override
+	public Collection<SearchHit> searchUntagged(final String searchTextInput) {
+		return collectHits(searchTextInput).values();
+	}
+
+	private Map<String, SearchHit> collectHits(final String searchTextInput) {
 		searchTextInput.hashCode(); // Simple NPE check
 		String searchText = searchTextInput.trim();
 
 		Set<String> tokens = analyzeSearchText(searchText);
-		Set<SearchHit> result = new HashSet<SearchHit>();
+		return resultCache.getHits(tokens, this::searchTokens);
+	}
+
+	private Map<String, SearchHit> searchTokens(final Set<String> tokens) {
+		// Hits by link uuid
+		Map<String, SearchHit> hits = new HashMap<String, SearchHit>();
 
 		// Empty Search bar shows all links
 		if (tokens.size() == 0) {
 			List<Link> allLinks = persistenceGatewayImpl.getAllLinks();
 			// Create a searchHit for each Link
-			result = allLinks.stream().map(link -> new SearchHit(link, 1)).collect(Collectors.toSet());
+			for (Link link : allLinks) {
+				hits.put(link.getUuid(), new SearchHit(link, 1));
+			}
+			return hits;
 		}
 
-		// Otherwise perform search for each token
-		for (String token : tokens) {
+		// Otherwise search links and tags for each token and the terms it
+		// may be a typo of, all at the same time
+		Map<String, Double> weightedTokens = relevanceModel.weightTokens(tokens);
+		List<String> queryTokens = new ArrayList<String>(weightedTokens.keySet());
+		double[] weights = new double[queryTokens.size()];
+		List<CompletableFuture<List<Link>>> linkLookups = new ArrayList<CompletableFuture<List<Link>>>();
+		List<CompletableFuture<Map<Tag, Set<Link>>>> tagLookups = new ArrayList<CompletableFuture<Map<Tag, Set<Link>>>>();
+		for (int t = 0; t < queryTokens.size(); t++) {
+			String token = queryTokens.get(t);
+			weights[t] = weightedTokens.get(token);
 			// Step 1: search links
-			List<Link> tokenLinks = persistenceGatewayImpl.searchLinks(token);
-			for (Link link : tokenLinks) {
-				boolean isAlreadyAdded = result.stream().anyMatch(s -> s.getLink().getUuid().equals(link.getUuid()));
-				if (isAlreadyAdded) {
-					SearchHit searchHit = result.stream().filter(s -> s.getLink().getUuid().equals(link.getUuid()))
-							.findAny().get();
-					searchHit.setScore(searchHit.getScore() + 1.0);
-				} else {
-					SearchHit searchHit = new SearchHit(link, 1.0);
-					result.add(searchHit);
+			linkLookups.add(CompletableFuture.supplyAsync(() -> persistenceGatewayImpl.searchLinks(token),
+					lookupExecutor));
+			// Step 2: Search tags
+			tagLookups.add(CompletableFuture.supplyAsync(() -> persistenceGatewayImpl.searchLinksForTagName(token),
+					lookupExecutor));
+		}
+		List<CompletableFuture<?>> lookups = new ArrayList<CompletableFuture<?>>(linkLookups);
+		lookups.addAll(tagLookups);
+		awaitAll(lookups);
+
+		// Step 3: number the matching links, the scores are arrays by number
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		List<Link> candidates = new ArrayList<Link>();
+		for (int t = 0; t < queryTokens.size(); t++) {
+			for (Link link : linkLookups.get(t).join()) {
+				addCandidate(indexes, candidates, link);
+			}
+			for (Set<Link> taggedLinks : tagLookups.get(t).join().values()) {
+				for (Link link : taggedLinks) {
+					addCandidate(indexes, candidates, link);
 				}
 			}
-			// Step 2: Search tags
-			Map<Tag, Set<Link>> linksForTags = persistenceGatewayImpl.searchLinksForTagName(token);
-			for (Entry<Tag, Set<Link>> linksForTag : linksForTags.entrySet()) {
+		}
+
+		// Step 4: score them
+		double[][] tagFrequencies = new double[queryTokens.size()][candidates.size()];
+		for (int t = 0; t < queryTokens.size(); t++) {
+			for (Entry<Tag, Set<Link>> linksForTag : tagLookups.get(t).join().entrySet()) {
+				double frequency = RelevanceModel.frequency(Collections.singleton(linksForTag.getKey()),
+						queryTokens.get(t));
 				for (Link link : linksForTag.getValue()) {
-					boolean isAlreadyAdded = result.stream()
-							.anyMatch(s -> s.getLink().getUuid().equals(link.getUuid()));
-					if (isAlreadyAdded) {
-						SearchHit searchHit = result.stream().filter(s -> s.getLink().getUuid().equals(link.getUuid()))
-								.findAny().get();
-						searchHit.setScore(searchHit.getScore() + 1.0);
-					} else {
-						SearchHit searchHit = new SearchHit(link, 1.0);
-						result.add(searchHit);
-					}
+					tagFrequencies[t][indexes.get(link.getUuid())] += frequency;
 				}
 			}
 		}
+		double[] scores = relevanceModel.score(queryTokens, weights, candidates, tagFrequencies);
+		for (int i = 0; i < candidates.size(); i++) {
+			hits.put(candidates.get(i).getUuid(), new SearchHit(candidates.get(i), scores[i]));
+		}
+		return hits;
+	}
 
-		// Final step: Load tags for all the links
-		for (SearchHit hit : result) {
-			List<Tag> tagsForLink = persistenceGatewayImpl.getTagsForLink(hit.getLink().getUuid());
-			hit.addTags(tagsForLink);
+	/**
+	 * Numbers the link as the next candidate, unless it was found before
+	 */
+	private void addCandidate(Map<String, Integer> indexes, List<Link> candidates, Link link) {
+		if (!indexes.containsKey(link.getUuid())) {
+			indexes.put(link.getUuid(), candidates.size());
+			candidates.add(link);
 		}
+	}
 
-		LOGGER.debug("Returning " + result.size() + " results for search text '" + searchText + "'");
-		return result;
+	/**
+	 * Waits for the lookups, rethrowing the failure of the first failed one
+	 */
+	private void awaitAll(List<CompletableFuture<?>> lookups) {
+		try {
+			CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[lookups.size()])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void loadTags(final Collection<SearchHit> hits) {
+		addTags(hits);
+	}
+
+	/**
+	 * Final step: Load tags for all the hits with a single query
+	 */
+	private void addTags(Collection<SearchHit> hits) {
+		List<String> linkUUIDs = new ArrayList<String>(hits.size());
+		for (SearchHit hit : hits) {
+			linkUUIDs.add(hit.getLink().getUuid());
+		}
+		Map<String, List<Tag>> tagsForLinks = persistenceGatewayImpl.getTagsForLinks(linkUUIDs);
+		for (SearchHit hit : hits) {
+			hit.addTags(tagsForLinks.get(hit.getLink().getUuid()));
+		}
 	}
 
 	private Set<String> analyzeSearchText(String searchText) {
@@ -102,7 +198,10 @@ public class AdvancedSearch implements SearchProvider {
 
 		String[] split = searchText.split("\\s+"); // Split on whitecase characters
 		for (String string : split) {
-			result.add(string);
+			// "".split() is {""}, the empty text has to have no tokens
+			if (!string.isEmpty()) {
+				result.add(string);
+			}
 		}
 		
 		return result;
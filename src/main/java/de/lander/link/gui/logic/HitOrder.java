@@ -0,0 +1,137 @@
+package de.lander.link.gui.logic;
+
+import java.util.Collection;
+
+/**
+ * The sort keys of many hits in primitive arrays, selecting the best hits by
+ * sorting an array of indexes<br>
+ * The keys are copied once, so comparisons read adjacent array slots instead
+ * of following the references to the hits and their links, and selecting
+ * allocates nothing but the arrays. The order is the one of
+ * {@link SearchHitComparator}, which decides the rare ties of all keys.
+ * 
+ * @author max
+ *
+ */
+final class HitOrder {
+
+	private final SearchHit[] hits;
+	private final long[] scoreKeys;
+	private final long[] hotnessKeys;
+	private final int[] clicks;
+	private final long[] nameKeys;
+
+	HitOrder(Collection<SearchHit> hits) {
+		this.hits = hits.toArray(new SearchHit[hits.size()]);
+		int size = this.hits.length;
+		scoreKeys = new long[size];
+		hotnessKeys = new long[size];
+		clicks = new int[size];
+		nameKeys = new long[size];
+		for (int i = 0; i < size; i++) {
+			SearchHit hit = this.hits[i];
+			scoreKeys[i] = hit.getScoreKey();
+			hotnessKeys[i] = hit.getHotnessKey();
+			clicks[i] = hit.getLink().getClicks();
+			nameKeys[i] = hit.getNameKey();
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the index of a hit
+	 * @return the hit
+	 */
+	SearchHit get(int index) {
+		return hits[index];
+	}
+
+	/**
+	 * Selects the best hits with a heap bounded to the limit
+	 * 
+	 * @param limit
+	 *            the maximum number of hits to select, positive
+	 * @return the indexes of the best hits, best first
+	 */
+	int[] select(int limit) {
+		int size = Math.min(limit, hits.length);
+		// the worst of the best hits selected so far on top
+		int[] heap = new int[size];
+		for (int i = 0; i < size; i++) {
+			heap[i] = i;
+			siftUp(heap, i);
+		}
+		for (int i = size; i < hits.length; i++) {
+			if (compare(i, heap[0]) < 0) {
+				heap[0] = i;
+				siftDown(heap, 0, size);
+			}
+		}
+
+		// heap sort: the worst hit moves to the end
+		for (int end = size - 1; end > 0; end--) {
+			int worst = heap[0];
+			heap[0] = heap[end];
+			heap[end] = worst;
+			siftDown(heap, 0, end);
+		}
+		return heap;
+	}
+
+	/**
+	 * @return a negative number if the first hit is better
+	 */
+	int compare(int a, int b) {
+		if (scoreKeys[a] != scoreKeys[b]) {
+			return scoreKeys[a] > scoreKeys[b] ? -1 : 1;
+		}
+		if (hotnessKeys[a] != hotnessKeys[b]) {
+			return hotnessKeys[a] > hotnessKeys[b] ? -1 : 1;
+		}
+		if (clicks[a] != clicks[b]) {
+			return clicks[a] > clicks[b] ? -1 : 1;
+		}
+		if (nameKeys[a] != nameKeys[b]) {
+			return Long.compareUnsigned(nameKeys[b], nameKeys[a]);
+		}
+		return SearchHitComparator.get().compare(hits[a], hits[b]);
+	}
+
+	private void siftUp(int[] heap, int position) {
+		int child = position;
+		while (child > 0) {
+			int parent = (child - 1) / 2;
+			if (compare(heap[parent], heap[child]) >= 0) {
+				return;
+			}
+			swap(heap, parent, child);
+			child = parent;
+		}
+	}
+
+	private void siftDown(int[] heap, int position, int size) {
+		int parent = position;
+		while (true) {
+			int worst = parent;
+			int left = 2 * parent + 1;
+			int right = left + 1;
+			if (left < size && compare(heap[left], heap[worst]) > 0) {
+				worst = left;
+			}
+			if (right < size && compare(heap[right], heap[worst]) > 0) {
+				worst = right;
+			}
+			if (worst == parent) {
+				return;
+			}
+			swap(heap, parent, worst);
+			parent = worst;
+		}
+	}
+
+	private static void swap(int[] heap, int a, int b) {
+		int swapped = heap[a];
+		heap[a] = heap[b];
+		heap[b] = swapped;
+	}
+}
@@ -0,0 +1,331 @@
+package de.lander.link.gui.logic;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+
+import org.apache.logging.log4j.Logger;
+
+import de.lander.link.gui.logic.IndexedSearch.Indexed;
+import de.lander.persistence.daos.PersistenceGateway;
+import de.lander.persistence.daos.PersistenceListener;
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Search provider answering from an in-memory inverted index over the name,
+ * url and title of the links and the names of their tags<br>
+ * The index is built from the database on startup and kept up to date as a
+ * {@link PersistenceListener}, so searches do not query the database at all.
+ * Each search token matches the terms of a field by prefix, scoring works like
+ * in {@link AdvancedSearch}. Unlike the gateway search it stands in for, which
+ * matches substrings, a token does not match inside a term: "ana" finds
+ * "Analytics" but not "Grafana".
+ *
+ * @author max
+ *
+ */
+@Indexed
+@ApplicationScoped
+public class IndexedSearch implements SearchProvider, PersistenceListener {
+
+	@Qualifier
+	@Retention(RUNTIME)
+	@Target({ TYPE, METHOD, FIELD, PARAMETER })
+	public static @interface Indexed {
+	}
+
+	@Inject
+	protected PersistenceGateway persistenceGatewayImpl;
+	@Inject
+	private Logger LOGGER;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Applies the changes read outside of the lock in order */
+	private final OrderedUpdates updates = new OrderedUpdates(lock.writeLock());
+
+	private final Map<String, Link> links = new HashMap<String, Link>();
+	private final Map<String, Tag> tags = new HashMap<String, Tag>();
+	private final Map<String, Set<String>> tagsByLink = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> linksByTag = new HashMap<String, Set<String>>();
+
+	/** Terms of name, url and title by link uuid */
+	private final InvertedIndex linkTerms = new InvertedIndex();
+	/** Terms of the name by tag uuid */
+	private final InvertedIndex tagTerms = new InvertedIndex();
+
+	@PostConstruct
+	void buildIndex() {
+		// Register first: changes written while loading wait for the lock and
+		// are applied on top of the loaded state
+		persistenceGatewayImpl.addPersistenceListener(this);
+
+		lock.writeLock().lock();
+		try {
+			List<Link> allLinks = persistenceGatewayImpl.getAllLinks();
+			List<Tag> allTags = persistenceGatewayImpl.getAllTags();
+			List<String> linkUUIDs = new ArrayList<String>(allLinks.size());
+			for (Link link : allLinks) {
+				linkUUIDs.add(link.getUuid());
+			}
+			Map<String, List<Tag>> tagsForLinks = persistenceGatewayImpl.getTagsForLinks(linkUUIDs);
+
+			for (Tag tag : allTags) {
+				indexTag(tag);
+			}
+			for (Link link : allLinks) {
+				indexLink(link, tagsForLinks.get(link.getUuid()));
+			}
+
+			LOGGER.info("Indexed " + links.size() + " links and " + tags.size() + " tags with "
+					+ linkTerms.getTermCount() + " link terms and " + tagTerms.getTermCount() + " tag terms");
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@PreDestroy
+	void close() {
+		persistenceGatewayImpl.removePersistenceListener(this);
+	}
+
+	public Set<SearchHit> performSearch(final String searchTextInput) {
+		searchTextInput.hashCode(); // Simple NPE check
+		String searchText = searchTextInput.trim();
+
+		Map<String, SearchHit> hits;
+		lock.readLock().lock();
+		try {
+			hits = collectHits(analyzeSearchText(searchText));
+			addTags(hits.values());
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		LOGGER.debug("Returning " + hits.size() + " indexed results for search text '" + searchText + "'");
+		return new HashSet<SearchHit>(hits.values());
+	}
+
+	@Override
+	public SearchResult performSearch(final String searchTextInput, final int offset, final int limit) {
+		searchTextInput.hashCode(); // Simple NPE check
+		String searchText = searchTextInput.trim();
+
+		SearchResult result;
+		lock.readLock().lock();
+		try {
+			Map<String, SearchHit> hits = collectHits(analyzeSearchText(searchText));
+			result = TopHits.toResult(hits.values(), offset, limit);
+			// Tags are only needed for the hits shown
+			addTags(result.getHits());
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		LOGGER.debug("Returning " + result.getHits().size() + " of " + result.getTotalHits()
+				+ " indexed results for search text '" + searchText + "'");
+		return result;
+	}
+
+	/**
+	 * Needs the read lock
+	 */
+	private Map<String, SearchHit> collectHits(Set<String> tokens) {
+		Map<String, SearchHit> hits = new HashMap<String, SearchHit>();
+
+		// Empty Search bar shows all links
+		if (tokens.size() == 0) {
+			for (Link link : links.values()) {
+				hits.put(link.getUuid(), new SearchHit(link, 1));
+			}
+		}
+
+		// Otherwise perform search for each token
+		for (String token : tokens) {
+			List<String> terms = InvertedIndex.tokenize(token);
+			if (terms.isEmpty()) {
+				continue;
+			}
+
+			// Step 1: search links
+			for (String linkUUID : linkTerms.findByAllPrefixes(terms)) {
+				addMatch(hits, linkUUID);
+			}
+			// Step 2: Search tags
+			for (String tagUUID : tagTerms.findByAllPrefixes(terms)) {
+				Set<String> taggedLinks = linksByTag.get(tagUUID);
+				if (taggedLinks != null) {
+					for (String linkUUID : taggedLinks) {
+						addMatch(hits, linkUUID);
+					}
+				}
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Final step: attach the tags of the links, needs the read lock
+	 */
+	private void addTags(Collection<SearchHit> hits) {
+		for (SearchHit hit : hits) {
+			for (String tagUUID : tagsByLink.get(hit.getLink().getUuid())) {
+				Tag tag = tags.get(tagUUID);
+				if (tag != null) {
+					hit.addTag(tag);
+				}
+			}
+		}
+	}
+
+	private void addMatch(Map<String, SearchHit> hits, String linkUUID) {
+		SearchHit searchHit = hits.get(linkUUID);
+		if (searchHit == null) {
+			hits.put(linkUUID, new SearchHit(links.get(linkUUID), 1.0));
+		} else {
+			searchHit.addScore(1.0);
+		}
+	}
+
+	private Set<String> analyzeSearchText(String searchText) {
+		Set<String> result = new HashSet<String>();
+
+		String[] split = searchText.toLowerCase(Locale.ENGLISH).split("\\s+"); // Split on whitespace
+		for (String string : split) {
+			if (!string.isEmpty()) {
+				result.add(string);
+			}
+		}
+
+		return result;
+	}
+
+	// /////////////
+	// INDEX MAINTENANCE
+	// /////////////
+
+	@Override
+	public void linkSaved(String linkUUID) {
+		// Read outside of the lock, searches must not wait for the database
+		updates.apply(linkUUID, () -> {
+			Link link = persistenceGatewayImpl.getLinkByUUID(linkUUID);
+			if (link == null) {
+				return () -> removeLink(linkUUID);
+			}
+			List<Tag> linkTags = persistenceGatewayImpl.getTagsForLink(linkUUID);
+			return () -> indexLink(link, linkTags);
+		});
+	}
+
+	@Override
+	public void linkDeleted(String linkUUID) {
+		updates.apply(linkUUID, () -> () -> removeLink(linkUUID));
+	}
+
+	@Override
+	public void tagSaved(String tagUUID) {
+		updates.apply(tagUUID, () -> {
+			Tag tag = persistenceGatewayImpl.getTagByUUID(tagUUID);
+			return tag == null ? () -> removeTag(tagUUID) : () -> indexTag(tag);
+		});
+	}
+
+	@Override
+	public void tagDeleted(String tagUUID) {
+		updates.apply(tagUUID, () -> () -> removeTag(tagUUID));
+	}
+
+	@Override
+	public void linkClicked(String linkUUID) {
+		// The terms did not change, only the clicks and hotness of the link
+		updates.applyPartial(linkUUID, () -> {
+			Link link = persistenceGatewayImpl.getLinkByUUID(linkUUID);
+			return link == null ? null : () -> links.replace(linkUUID, link);
+		});
+	}
+
+	@Override
+	public void tagClicked(String tagUUID) {
+		updates.applyPartial(tagUUID, () -> {
+			Tag tag = persistenceGatewayImpl.getTagByUUID(tagUUID);
+			return tag == null ? null : () -> tags.replace(tagUUID, tag);
+		});
+	}
+
+	private void indexLink(Link link, List<Tag> linkTags) {
+		String linkUUID = link.getUuid();
+		removeLink(linkUUID);
+
+		links.put(linkUUID, link);
+		List<String> terms = new ArrayList<String>();
+		terms.addAll(InvertedIndex.tokenize(link.getName()));
+		terms.addAll(InvertedIndex.tokenize(link.getUrl()));
+		terms.addAll(InvertedIndex.tokenize(link.getTitle()));
+		linkTerms.put(linkUUID, terms);
+
+		Set<String> tagUUIDs = new HashSet<String>();
+		for (Tag tag : linkTags == null ? Collections.<Tag> emptyList() : linkTags) {
+			if (!tags.containsKey(tag.getUuid())) {
+				indexTag(tag);
+			}
+			tagUUIDs.add(tag.getUuid());
+			linksByTag.get(tag.getUuid()).add(linkUUID);
+		}
+		tagsByLink.put(linkUUID, tagUUIDs);
+	}
+
+	private void removeLink(String linkUUID) {
+		links.remove(linkUUID);
+		linkTerms.remove(linkUUID);
+		Set<String> tagUUIDs = tagsByLink.remove(linkUUID);
+		if (tagUUIDs != null) {
+			for (String tagUUID : tagUUIDs) {
+				Set<String> taggedLinks = linksByTag.get(tagUUID);
+				if (taggedLinks != null) {
+					taggedLinks.remove(linkUUID);
+				}
+			}
+		}
+	}
+
+	private void indexTag(Tag tag) {
+		tags.put(tag.getUuid(), tag);
+		tagTerms.put(tag.getUuid(), InvertedIndex.tokenize(tag.getName()));
+		if (!linksByTag.containsKey(tag.getUuid())) {
+			linksByTag.put(tag.getUuid(), new HashSet<String>());
+		}
+	}
+
+	private void removeTag(String tagUUID) {
+		tags.remove(tagUUID);
+		tagTerms.remove(tagUUID);
+		Set<String> taggedLinks = linksByTag.remove(tagUUID);
+		if (taggedLinks != null) {
+			for (String linkUUID : taggedLinks) {
+				tagsByLink.get(linkUUID).remove(tagUUID);
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Maps the terms of a text field to the ids of the documents containing them<br>
+ * Terms are kept sorted, so all documents with a term starting with a prefix
+ * are found with a range scan over the term dictionary.<br>
+ * Not thread safe, the owner has to synchronize access.
+ *
+ * @author max
+ *
+ */
+class InvertedIndex {
+
+	private final TreeMap<String, Set<String>> postings = new TreeMap<String, Set<String>>();
+	private final Map<String, Set<String>> termsByDocument = new HashMap<String, Set<String>>();
+
+	/**
+	 * Splits a text into lower case terms at every character that is neither
+	 * a letter nor a digit
+	 *
+	 * @param text
+	 *            the text, may be <code>null</code>
+	 * @return the terms of the text
+	 */
+	static List<String> tokenize(String text) {
+		if (text == null || text.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<String> terms = new ArrayList<String>();
+		for (String term : text.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+")) {
+			if (!term.isEmpty()) {
+				terms.add(term);
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * Indexes a document, replacing its previous terms
+	 *
+	 * @param documentId
+	 *            the id of the document
+	 * @param terms
+	 *            the terms of the document
+	 */
+	void put(String documentId, Collection<String> terms) {
+		remove(documentId);
+
+		Set<String> documentTerms = new HashSet<String>(terms);
+		for (String term : documentTerms) {
+			Set<String> documents = postings.get(term);
+			if (documents == null) {
+				documents = new HashSet<String>();
+				postings.put(term, documents);
+			}
+			documents.add(documentId);
+		}
+		termsByDocument.put(documentId, documentTerms);
+	}
+
+	/**
+	 * Removes a document from the index
+	 *
+	 * @param documentId
+	 *            the id of the document
+	 */
+	void remove(String documentId) {
+		Set<String> documentTerms = termsByDocument.remove(documentId);
+		if (documentTerms == null) {
+			return;
+		}
+
+		for (String term : documentTerms) {
+			Set<String> documents = postings.get(term);
+			documents.remove(documentId);
+			if (documents.isEmpty()) {
+				postings.remove(term);
+			}
+		}
+	}
+
+	/**
+	 * Finds all documents containing a term starting with the given prefix
+	 *
+	 * @param prefix
+	 *            the lower case prefix
+	 * @return the ids of the matching documents, must not be modified
+	 */
+	Set<String> findByPrefix(String prefix) {
+		SortedMap<String, Set<String>> matchingTerms = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+		if (matchingTerms.size() == 1) {
+			return matchingTerms.values().iterator().next();
+		}
+
+		Set<String> documents = new HashSet<String>();
+		for (Set<String> termDocuments : matchingTerms.values()) {
+			documents.addAll(termDocuments);
+		}
+		return documents;
+	}
+
+	/**
+	 * Finds all documents which contain, for each of the given prefixes, a
+	 * term starting with it
+	 *
+	 * @param prefixes
+	 *            the lower case prefixes
+	 * @return the ids of the matching documents
+	 */
+	Set<String> findByAllPrefixes(List<String> prefixes) {
+		Set<String> documents = null;
+		for (String prefix : prefixes) {
+			Set<String> prefixDocuments = findByPrefix(prefix);
+			if (documents == null) {
+				documents = new HashSet<String>(prefixDocuments);
+			} else {
+				documents.retainAll(prefixDocuments);
+			}
+			if (documents.isEmpty()) {
+				break;
+			}
+		}
+		return documents == null ? Collections.<String> emptySet() : documents;
+	}
+
+	/**
+	 * @return the number of distinct terms
+	 */
+	int getTermCount() {
+		return postings.size();
+	}
+}
@@ -0,0 +1,73 @@
+package de.lander.link.gui.logic;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the database lookups of a single search concurrently, see
+ * {@link AdvancedSearch}<br>
+ * The pool is separate from the {@link SearchExecutor}, whose searches wait
+ * for their lookups and would otherwise block the threads the lookups need.
+ * If all threads are busy and the bounded queue is full, or the pool was
+ * stopped, the lookup runs on the searching thread, which waits for it
+ * anyway. The number of threads is set by the system property
+ * {@link #THREADS_PROPERTY}.
+ *
+ * @author max
+ *
+ */
+@ApplicationScoped
+public class LookupExecutor implements Executor {
+
+	/**
+	 * System property for the number of lookup threads
+	 */
+	public static final String THREADS_PROPERTY = "linklander.lookup.threads";
+
+	private static final int QUEUE_CAPACITY_PER_THREAD = 16;
+
+	@Inject
+	private Logger LOGGER;
+
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	void start() {
+		int threads = Integer.getInteger(THREADS_PROPERTY, 2 * Runtime.getRuntime().availableProcessors());
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * QUEUE_CAPACITY_PER_THREAD), runnable -> {
+					Thread thread = new Thread(runnable, "linklander-lookup-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, (lookup, rejectingExecutor) -> {
+					// unlike the CallerRunsPolicy also after the shutdown, a
+					// dropped lookup would block its search forever
+					lookup.run();
+				});
+		LOGGER.info("Looking up search tokens with " + threads + " threads");
+	}
+
+	@PreDestroy
+	void stop() {
+		// running lookups are not interrupted, an interrupt closes the store
+		// files of neo4j
+		executor.shutdown();
+	}
+
+	@Override
+	public void execute(Runnable lookup) {
+		executor.execute(lookup);
+	}
+}
@@ -0,0 +1,96 @@
+package de.lander.link.gui.logic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import de.lander.persistence.daos.PersistenceListener;
+
+/**
+ * Applies the changes of a {@link PersistenceListener} in the order of its
+ * events, although the changed link or tag is read outside of the lock of the
+ * listener<br>
+ * Events of the same link or tag may be handled concurrently, and the older
+ * read may get the lock last. Every event takes a version before it reads, so
+ * a later version has read at least everything committed before an earlier
+ * one. A change is applied only if no change of a later version of the same
+ * uuid was applied already. The versions are forgotten whenever no event is
+ * handled, so they take no memory between changes.
+ *
+ * @author max
+ *
+ */
+final class OrderedUpdates {
+
+	private final Lock writeLock;
+	private final AtomicLong versions = new AtomicLong();
+	private final AtomicInteger running = new AtomicInteger();
+	/** The version of the change applied last by uuid, needs the write lock */
+	private final Map<String, Long> applied = new HashMap<String, Long>();
+
+	/**
+	 * @param writeLock
+	 *            the lock the changes are applied under
+	 */
+	OrderedUpdates(Lock writeLock) {
+		this.writeLock = writeLock;
+	}
+
+	/**
+	 * Reads a saved or deleted link or tag and applies the change, unless a
+	 * later read of it was applied already
+	 *
+	 * @param uuid
+	 *            the uuid of the link or tag
+	 * @param read
+	 *            reads the link or tag outside of the lock and returns the
+	 *            change to apply under the lock, <code>null</code> for none
+	 */
+	void apply(String uuid, Supplier<Runnable> read) {
+		apply(uuid, read, true);
+	}
+
+	/**
+	 * Like {@link #apply(String, Supplier)} for a change of a part of the link
+	 * or tag, e.g. its clicks, which does not replace a later complete change
+	 * either, so a complete change of an earlier version is still applied
+	 *
+	 * @param uuid
+	 *            the uuid of the link or tag
+	 * @param read
+	 *            reads the link or tag outside of the lock and returns the
+	 *            change to apply under the lock, <code>null</code> for none
+	 */
+	void applyPartial(String uuid, Supplier<Runnable> read) {
+		apply(uuid, read, false);
+	}
+
+	private void apply(String uuid, Supplier<Runnable> read, boolean complete) {
+		running.incrementAndGet();
+		long version = versions.incrementAndGet();
+		Runnable change = null;
+		try {
+			change = read.get();
+		} finally {
+			writeLock.lock();
+			try {
+				Long latest = applied.get(uuid);
+				if (change != null && (latest == null || latest < version)) {
+					if (complete) {
+						applied.put(uuid, version);
+					}
+					change.run();
+				}
+			} finally {
+				// no older read is running, nothing to order against
+				if (running.decrementAndGet() == 0) {
+					applied.clear();
+				}
+				writeLock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import de.lander.persistence.daos.PersistenceGateway;
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Search provider of a single UI narrowing the previous result while the
+ * search text is extended keystroke by keystroke<br>
+ * A link matches a token if its name or url contains it, or one of its tags
+ * does, like in {@link AdvancedSearch}. A text containing the previous token
+ * therefore matches a subset of the previous hits, which are filtered in
+ * memory and scored by the {@link RelevanceModel} instead of being searched
+ * again. The refined hits are scored with the same typo expansion of the
+ * token as by the delegate, but refining keeps the exact matches only: links
+ * matching only a similar term are left out, and if no link matches exactly
+ * the text is searched by the delegate. Other texts, and texts of several
+ * tokens, whose hits are a union and not a subset, are searched by the
+ * delegate. So is every text after a link or tag was written, which starts a
+ * new generation of the {@link SearchResultCache}.<br>
+ * The hits are kept without tags, see
+ * {@link SearchProvider#searchUntagged(String)}: refining looks up the tags
+ * matching the token instead of the tags of every hit, and the tags are
+ * loaded for the pages returned only.<br>
+ * Searches of the UI run in the background while the table loads further
+ * pages of the result shown, so a background search is prepared without
+ * touching the state of the shown result and committed once it is shown.
+ *
+ * @author max
+ *
+ */
+public class RefiningSearch implements SearchProvider {
+
+	private final SearchProvider delegate;
+	private final PersistenceGateway persistenceGateway;
+	private final RelevanceModel relevanceModel;
+	private final SearchResultCache resultCache;
+
+	/** The state of the result shown, null if it can't be refined */
+	private Refinement shown;
+
+	/**
+	 * @param delegate
+	 *            the provider searching texts which can't be refined
+	 * @param persistenceGateway
+	 *            looks up the tags matching a refined token
+	 * @param relevanceModel
+	 *            scores the refined hits
+	 * @param resultCache
+	 *            tells if links or tags were written since the last search
+	 */
+	public RefiningSearch(SearchProvider delegate, PersistenceGateway persistenceGateway,
+			RelevanceModel relevanceModel, SearchResultCache resultCache) {
+		this.delegate = delegate;
+		this.persistenceGateway = persistenceGateway;
+		this.relevanceModel = relevanceModel;
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Forgets the last result, so the next search is answered by the
+	 * delegate, e.g. after links were changed
+	 */
+	public synchronized void reset() {
+		shown = null;
+	}
+
+	/**
+	 * Searches the first page of a text in the background, refining the
+	 * result shown but not replacing it: until the search is shown with
+	 * {@link #commit(PreparedSearch)}, further pages are still loaded for the
+	 * shown text
+	 *
+	 * @param text
+	 *            the search text
+	 * @param limit
+	 *            the size of the first page
+	 * @return the search to show
+	 */
+	public PreparedSearch prepare(String text, int limit) {
+		Refinement base;
+		synchronized (this) {
+			base = shown;
+		}
+		Refinement refinement = refinement(base, text);
+		SearchResult firstPage = refinement == null ? delegate.performSearch(text, 0, limit)
+				: page(refinement, 0, limit);
+		return new PreparedSearch(refinement, firstPage);
+	}
+
+	/**
+	 * Makes a prepared search the result shown, which is refined from then on
+	 *
+	 * @param search
+	 *            the result of {@link #prepare(String, int)}
+	 */
+	public synchronized void commit(PreparedSearch search) {
+		shown = search.refinement;
+	}
+
+	@Override
+	public synchronized Set<SearchHit> performSearch(String text) {
+		shown = refinement(shown, text);
+		return shown == null ? delegate.performSearch(text) : new HashSet<SearchHit>(tagged(shown.hits));
+	}
+
+	@Override
+	public synchronized SearchResult performSearch(String text, int offset, int limit) {
+		shown = refinement(shown, text);
+		return shown == null ? delegate.performSearch(text, offset, limit) : page(shown, offset, limit);
+	}
+
+	/**
+	 * @return a page of the refined hits, with tags
+	 */
+	private SearchResult page(Refinement refinement, int offset, int limit) {
+		SearchResult result = TopHits.toResult(refinement.hits, offset, limit);
+		return new SearchResult(tagged(result.getHits()), offset, result.getTotalHits());
+	}
+
+	/**
+	 * @return copies of the hits with their tags, the hits of a refinement
+	 *         are shared and stay without tags
+	 */
+	private List<SearchHit> tagged(Collection<SearchHit> hits) {
+		List<SearchHit> tagged = new ArrayList<SearchHit>(hits.size());
+		for (SearchHit hit : hits) {
+			tagged.add(new SearchHit(hit.getLink(), hit.getScore()));
+		}
+		delegate.loadTags(tagged);
+		return tagged;
+	}
+
+	/**
+	 * @return all hits of a text of a single token, refined from the base if
+	 *         possible, or null for any other text
+	 */
+	private Refinement refinement(Refinement base, String text) {
+		String[] tokens = text.trim().split("\\s+");
+		if (tokens.length != 1 || tokens[0].isEmpty()) {
+			return null;
+		}
+
+		String token = tokens[0].toLowerCase(Locale.ENGLISH);
+		// read before searching, a write during the search makes it stale
+		long generation = resultCache.getGeneration();
+		if (base != null && token.contains(base.token) && generation == base.generation) {
+			if (token.equals(base.token)) {
+				// the same token again is a further page of the result
+				return base;
+			}
+			List<SearchHit> refined = refine(base.hits, token);
+			if (!refined.isEmpty()) {
+				return new Refinement(token, refined, generation);
+			}
+			// Probably a typo, only the delegate searches similar terms
+		}
+		return new Refinement(token, new ArrayList<SearchHit>(delegate.searchUntagged(text)), generation);
+	}
+
+	private List<SearchHit> refine(List<SearchHit> hits, String token) {
+		// scored like by the delegate, with the terms the token may be a typo
+		// of. The tags matching the terms are looked up in the tag index, the
+		// token itself comes first
+		Map<String, Double> weightedTokens = relevanceModel.weightTokens(Collections.singleton(token));
+		List<String> queryTokens = new ArrayList<String>(weightedTokens.keySet());
+		List<Map<Tag, Set<Link>>> matchingTags = new ArrayList<Map<Tag, Set<Link>>>(queryTokens.size());
+		for (String queryToken : queryTokens) {
+			matchingTags.add(persistenceGateway.searchLinksForTagName(queryToken));
+		}
+		Set<String> taggedWithToken = new HashSet<String>();
+		for (Set<Link> taggedLinks : matchingTags.get(0).values()) {
+			for (Link link : taggedLinks) {
+				taggedWithToken.add(link.getUuid());
+			}
+		}
+
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		List<Link> links = new ArrayList<Link>();
+		for (SearchHit hit : hits) {
+			Link link = hit.getLink();
+			if (contains(link.getName(), token) || contains(link.getUrl(), token)
+					|| taggedWithToken.contains(link.getUuid())) {
+				indexes.put(link.getUuid(), links.size());
+				links.add(link);
+			}
+		}
+
+		double[] weights = new double[queryTokens.size()];
+		double[][] tagFrequencies = new double[queryTokens.size()][links.size()];
+		for (int t = 0; t < queryTokens.size(); t++) {
+			weights[t] = weightedTokens.get(queryTokens.get(t));
+			for (Entry<Tag, Set<Link>> linksForTag : matchingTags.get(t).entrySet()) {
+				double frequency = RelevanceModel.frequency(Collections.singleton(linksForTag.getKey()),
+						queryTokens.get(t));
+				for (Link link : linksForTag.getValue()) {
+					Integer index = indexes.get(link.getUuid());
+					if (index != null) {
+						tagFrequencies[t][index] += frequency;
+					}
+				}
+			}
+		}
+		double[] scores = relevanceModel.score(queryTokens, weights, links, tagFrequencies);
+
+		List<SearchHit> refined = new ArrayList<SearchHit>(links.size());
+		for (int i = 0; i < links.size(); i++) {
+			refined.add(new SearchHit(links.get(i), scores[i]));
+		}
+		return refined;
+	}
+
+	private static boolean contains(String value, String token) {
+		return value != null && value.toLowerCase(Locale.ENGLISH).contains(token);
+	}
+
+	/**
+	 * All hits of a token with the generation they were searched in
+	 */
+	private static final class Refinement {
+		/** The lower case token */
+		final String token;
+		/** All hits of the token, with their tags */
+		final List<SearchHit> hits;
+		final long generation;
+
+		Refinement(String token, List<SearchHit> hits, long generation) {
+			this.token = token;
+			this.hits = hits;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * A search prepared in the background, see {@link RefiningSearch#prepare(String, int)}
+	 */
+	public static final class PreparedSearch {
+		private final Refinement refinement;
+		private final SearchResult firstPage;
+
+		private PreparedSearch(Refinement refinement, SearchResult firstPage) {
+			this.refinement = refinement;
+			this.firstPage = firstPage;
+		}
+
+		public SearchResult getFirstPage() {
+			return firstPage;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.logging.log4j.Logger;
+
+import de.lander.persistence.daos.PersistenceGateway;
+import de.lander.persistence.daos.PersistenceListener;
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Scores the hits of a search with BM25F over the name, title, url and tags
+ * of the links plus a prior for links clicked recently<br>
+ * The field lengths of all links are kept up to date as a
+ * {@link PersistenceListener}, for the length normalization of BM25. A search
+ * token matches the terms containing it, like the substring search of the
+ * database, so the document frequency of a token is the number of its
+ * matching links, which only the search knows. Scores are computed in
+ * primitive arrays indexed like the candidates.<br>
+ * The terms of all links and tags form a {@link TermDictionary}, which expands
+ * mistyped tokens to the terms they probably meant, see
+ * {@link #expand(String)}.
+ *
+ * @author max
+ *
+ */
+@ApplicationScoped
+public class RelevanceModel implements PersistenceListener {
+
+	private static final int NAME = 0;
+	private static final int TITLE = 1;
+	private static final int URL = 2;
+	private static final int TAGS = 3;
+	private static final int FIELDS = 4;
+
+	private static final String[] NO_TAGS = new String[0];
+
+	/** The weight of a matching term per field */
+	private static final double[] FIELD_WEIGHTS = { 3.0, 1.5, 1.0, 2.0 };
+	/** The strength of the length normalization per field */
+	private static final double[] FIELD_LENGTH_NORMS = { 0.75, 0.75, 0.75, 0.5 };
+	/** The saturation of the term frequency */
+	private static final double K1 = 1.2;
+
+	/** The score added by a link with very many recent clicks */
+	private static final double CLICK_PRIOR_WEIGHT = 0.5;
+	/** The hotness adding half of the prior, see {@link Link#getHotness(long)} */
+	private static final double CLICK_PRIOR_HALF = 10.0;
+
+	/** Tokens shorter than this are not expanded, one edit changes too much */
+	private static final int MIN_FUZZY_LENGTH = 4;
+	/** Tokens at least this long are expanded by two edits, others by one */
+	private static final int MIN_TWO_EDITS_LENGTH = 8;
+	/** The maximum number of expansions per token */
+	private static final int MAX_EXPANSIONS = 3;
+	/** The weight of an expanded term is reduced by this factor per edit */
+	public static final double FUZZY_PENALTY = 0.5;
+
+	@Inject
+	protected PersistenceGateway persistenceGatewayImpl;
+	@Inject
+	private Logger LOGGER;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Applies the changes read outside of the lock in order */
+	private final OrderedUpdates updates = new OrderedUpdates(lock.writeLock());
+
+	/** Term counts of name, title and url by link uuid */
+	private final Map<String, int[]> linkLengths = new HashMap<String, int[]>();
+	private final Map<String, String[]> tagsByLink = new HashMap<String, String[]>();
+	/** Term counts of the tag names by tag uuid */
+	private final Map<String, Integer> tagLengths = new HashMap<String, Integer>();
+	private final Map<String, Integer> linkCountsByTag = new HashMap<String, Integer>();
+	/** Sum of the field lengths of all links, by field */
+	private final long[] totalLengths = new long[FIELDS];
+	/** The distinct terms by link or tag uuid, to remove them from the dictionary */
+	private final Map<String, List<String>> documentTerms = new HashMap<String, List<String>>();
+	private final TermDictionary dictionary = new TermDictionary();
+
+	@PostConstruct
+	void buildStatistics() {
+		// Register first, changes written while loading wait for the lock
+		persistenceGatewayImpl.addPersistenceListener(this);
+
+		lock.writeLock().lock();
+		try {
+			List<Link> allLinks = persistenceGatewayImpl.getAllLinks();
+			Map<String, List<Tag>> tagsForLinks = persistenceGatewayImpl
+					.getTagsForLinks(allLinks.stream().map(Link::getUuid).collect(Collectors.toList()));
+			for (Link link : allLinks) {
+				putLink(link, tagsForLinks.get(link.getUuid()));
+			}
+			LOGGER.info("Built relevance statistics of " + linkLengths.size() + " links and " + tagLengths.size()
+					+ " tags with " + dictionary.size() + " terms");
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@PreDestroy
+	void close() {
+		persistenceGatewayImpl.removePersistenceListener(this);
+	}
+
+	/**
+	 * Finds the terms of the links and tags a mistyped token could have meant
+	 *
+	 * @param token
+	 *            the lower case search token
+	 * @return the nearest terms not containing the token with their edit
+	 *         distance, nearest first; empty for short tokens
+	 */
+	public Map<String, Integer> expand(String token) {
+		if (token.length() < MIN_FUZZY_LENGTH) {
+			return Collections.emptyMap();
+		}
+		int maxDistance = token.length() < MIN_TWO_EDITS_LENGTH ? 1 : 2;
+
+		lock.readLock().lock();
+		try {
+			return dictionary.expand(token, maxDistance, MAX_EXPANSIONS);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Weights the search tokens and the terms they may be typos of, see
+	 * {@link #expand(String)}
+	 *
+	 * @param tokens
+	 *            the search tokens
+	 * @return the lower case tokens weighted 1 followed by their expansions
+	 *         weighted {@link #FUZZY_PENALTY} per edit
+	 */
+	public Map<String, Double> weightTokens(Collection<String> tokens) {
+		Map<String, Double> weightedTokens = new LinkedHashMap<String, Double>();
+		for (String token : tokens) {
+			String queryToken = token.toLowerCase(Locale.ENGLISH);
+			weightedTokens.put(queryToken, 1.0);
+			for (Entry<String, Integer> expansion : expand(queryToken).entrySet()) {
+				double weight = Math.pow(FUZZY_PENALTY, expansion.getValue());
+				weightedTokens.merge(expansion.getKey(), weight, Math::max);
+			}
+		}
+		return weightedTokens;
+	}
+
+	/**
+	 * Scores the candidates of a search
+	 *
+	 * @param tokens
+	 *            the lower case search tokens
+	 * @param weights
+	 *            the weight of each token, less than 1 for expanded terms
+	 * @param links
+	 *            the candidates, each matching at least one token
+	 * @param tagFrequencies
+	 *            per token the frequency in the tags of each candidate, see
+	 *            {@link #frequency(Collection, String)}
+	 * @return the scores by index of the candidates
+	 */
+	public double[] score(List<String> tokens, double[] weights, List<Link> links, double[][] tagFrequencies) {
+		int size = links.size();
+		double[] scores = new double[size];
+		double[][] lengths = new double[FIELDS][size];
+		double[] averageLengths = new double[FIELDS];
+		int linkCount;
+
+		lock.readLock().lock();
+		try {
+			linkCount = Math.max(linkLengths.size(), size);
+			for (int field = 0; field < FIELDS; field++) {
+				averageLengths[field] = Math.max(1.0, (double) totalLengths[field] / Math.max(1, linkLengths.size()));
+			}
+			for (int i = 0; i < size; i++) {
+				int[] linkLength = linkLengths.get(links.get(i).getUuid());
+				for (int field = NAME; field <= URL; field++) {
+					lengths[field][i] = linkLength == null ? averageLengths[field] : linkLength[field];
+				}
+				lengths[TAGS][i] = tagLength(links.get(i).getUuid());
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		double[][] frequencies = new double[FIELDS][size];
+		boolean[] matches = new boolean[size];
+		for (int t = 0; t < tokens.size(); t++) {
+			String token = tokens.get(t);
+			if (token.isEmpty()) {
+				// Every link matches the empty search equally
+				for (int i = 0; i < size; i++) {
+					scores[i] += 1.0;
+				}
+				continue;
+			}
+
+			int documentFrequency = 0;
+			for (int i = 0; i < size; i++) {
+				Link link = links.get(i);
+				frequencies[NAME][i] = frequency(link.getName(), token);
+				frequencies[TITLE][i] = frequency(link.getTitle(), token);
+				frequencies[URL][i] = frequency(link.getUrl(), token);
+				frequencies[TAGS][i] = tagFrequencies[t][i];
+				// the title is not searched, it only adds to the score
+				matches[i] = frequencies[NAME][i] > 0 || frequencies[URL][i] > 0 || frequencies[TAGS][i] > 0;
+				if (matches[i]) {
+					documentFrequency++;
+				}
+			}
+
+			double idf = Math.log(1.0 + (linkCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+			for (int i = 0; i < size; i++) {
+				if (!matches[i]) {
+					continue;
+				}
+				double weightedFrequency = 0;
+				for (int field = 0; field < FIELDS; field++) {
+					double norm = 1.0 - FIELD_LENGTH_NORMS[field]
+							+ FIELD_LENGTH_NORMS[field] * lengths[field][i] / averageLengths[field];
+					weightedFrequency += FIELD_WEIGHTS[field] * frequencies[field][i] / norm;
+				}
+				scores[i] += weights[t] * idf * weightedFrequency / (K1 + weightedFrequency);
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < size; i++) {
+			double hotness = links.get(i).getHotness(now);
+			scores[i] += CLICK_PRIOR_WEIGHT * hotness / (hotness + CLICK_PRIOR_HALF);
+		}
+		return scores;
+	}
+
+	/**
+	 * @param tags
+	 *            the tags of a link
+	 * @param token
+	 *            the lower case search token
+	 * @return the number of terms of the tag names containing the token
+	 */
+	public static double frequency(Collection<Tag> tags, String token) {
+		double frequency = 0;
+		for (Tag tag : tags) {
+			frequency += frequency(tag.getName(), token);
+		}
+		return frequency;
+	}
+
+	/**
+	 * @return the number of terms of the text containing the token, at least
+	 *         1 if the text contains a token spanning several terms
+	 */
+	private static int frequency(String text, String token) {
+		int frequency = 0;
+		for (String term : InvertedIndex.tokenize(text)) {
+			if (term.contains(token)) {
+				frequency++;
+			}
+		}
+		if (frequency == 0 && text != null && text.toLowerCase(Locale.ENGLISH).contains(token)) {
+			return 1;
+		}
+		return frequency;
+	}
+
+	/**
+	 * Needs the lock
+	 */
+	private int tagLength(String linkUUID) {
+		int length = 0;
+		for (String tagUUID : tagsByLink.getOrDefault(linkUUID, NO_TAGS)) {
+			length += tagLengths.getOrDefault(tagUUID, 0);
+		}
+		return length;
+	}
+
+	// /////////////
+	// STATISTICS MAINTENANCE
+	// /////////////
+
+	@Override
+	public void linkSaved(String linkUUID) {
+		// Read outside of the lock, searches must not wait for the database
+		updates.apply(linkUUID, () -> {
+			Link link = persistenceGatewayImpl.getLinkByUUID(linkUUID);
+			if (link == null) {
+				return () -> removeLink(linkUUID);
+			}
+			List<Tag> linkTags = persistenceGatewayImpl.getTagsForLink(linkUUID);
+			return () -> putLink(link, linkTags);
+		});
+	}
+
+	@Override
+	public void linkDeleted(String linkUUID) {
+		updates.apply(linkUUID, () -> () -> removeLink(linkUUID));
+	}
+
+	@Override
+	public void tagSaved(String tagUUID) {
+		updates.apply(tagUUID, () -> {
+			Tag tag = persistenceGatewayImpl.getTagByUUID(tagUUID);
+			return tag == null ? () -> removeTag(tagUUID) : () -> putTag(tag);
+		});
+	}
+
+	@Override
+	public void tagDeleted(String tagUUID) {
+		updates.apply(tagUUID, () -> () -> removeTag(tagUUID));
+	}
+
+	private void putLink(Link link, List<Tag> linkTags) {
+		removeLink(link.getUuid());
+
+		List<String> nameTerms = InvertedIndex.tokenize(link.getName());
+		List<String> titleTerms = InvertedIndex.tokenize(link.getTitle());
+		List<String> urlTerms = InvertedIndex.tokenize(link.getUrl());
+		int[] lengths = { nameTerms.size(), titleTerms.size(), urlTerms.size() };
+		linkLengths.put(link.getUuid(), lengths);
+		for (int field = NAME; field <= URL; field++) {
+			totalLengths[field] += lengths[field];
+		}
+
+		List<String> terms = new ArrayList<String>(nameTerms);
+		terms.addAll(titleTerms);
+		terms.addAll(urlTerms);
+		putTerms(link.getUuid(), terms);
+
+		List<Tag> tags = linkTags == null ? Collections.<Tag> emptyList() : linkTags;
+		String[] tagUUIDs = new String[tags.size()];
+		for (int i = 0; i < tagUUIDs.length; i++) {
+			Tag tag = tags.get(i);
+			putTag(tag);
+			tagUUIDs[i] = tag.getUuid();
+			linkCountsByTag.merge(tag.getUuid(), 1, Integer::sum);
+			totalLengths[TAGS] += tagLengths.get(tag.getUuid());
+		}
+		tagsByLink.put(link.getUuid(), tagUUIDs);
+	}
+
+	private void removeLink(String linkUUID) {
+		removeTerms(linkUUID);
+		int[] lengths = linkLengths.remove(linkUUID);
+		if (lengths != null) {
+			for (int field = NAME; field <= URL; field++) {
+				totalLengths[field] -= lengths[field];
+			}
+		}
+
+		String[] tagUUIDs = tagsByLink.remove(linkUUID);
+		if (tagUUIDs != null) {
+			for (String tagUUID : tagUUIDs) {
+				Integer tagLength = tagLengths.get(tagUUID);
+				if (tagLength != null) {
+					// deleted tags were subtracted already
+					linkCountsByTag.merge(tagUUID, -1, Integer::sum);
+					totalLengths[TAGS] -= tagLength;
+				}
+			}
+		}
+	}
+
+	private void putTag(Tag tag) {
+		int length = InvertedIndex.tokenize(tag.getName()).size();
+		putTerms(tag.getUuid(), InvertedIndex.tokenize(tag.getName()));
+		Integer previousLength = tagLengths.put(tag.getUuid(), length);
+		if (previousLength != null) {
+			totalLengths[TAGS] += (long) (length - previousLength) * linkCountsByTag.getOrDefault(tag.getUuid(), 0);
+		}
+	}
+
+	private void removeTag(String tagUUID) {
+		removeTerms(tagUUID);
+		Integer length = tagLengths.remove(tagUUID);
+		Integer linkCount = linkCountsByTag.remove(tagUUID);
+		if (length != null && linkCount != null) {
+			totalLengths[TAGS] -= (long) length * linkCount;
+		}
+	}
+
+	private void putTerms(String uuid, List<String> terms) {
+		removeTerms(uuid);
+		List<String> distinctTerms = new ArrayList<String>(new HashSet<String>(terms));
+		documentTerms.put(uuid, distinctTerms);
+		dictionary.add(distinctTerms);
+	}
+
+	private void removeTerms(String uuid) {
+		List<String> terms = documentTerms.remove(uuid);
+		if (terms != null) {
+			dictionary.remove(terms);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package de.lander.link.gui.logic;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the searches of all UIs on a bounded number of threads<br>
+ * Searches wait in a bounded queue, cancelled searches are dropped from it
+ * when it is full. If it is still full, the search runs on the calling request
+ * thread, which slows down the users typing fastest. The number of threads and
+ * the queue capacity are set by the system properties
+ * {@link #THREADS_PROPERTY} and {@link #QUEUE_CAPACITY_PROPERTY}.
+ *
+ * @author max
+ *
+ */
+@ApplicationScoped
+public class SearchExecutor {
+
+	/**
+	 * System property for the number of search threads
+	 */
+	public static final String THREADS_PROPERTY = "linklander.search.threads";
+
+	/**
+	 * System property for the maximum number of waiting searches
+	 */
+	public static final String QUEUE_CAPACITY_PROPERTY = "linklander.search.queueCapacity";
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+	@Inject
+	private Logger LOGGER;
+
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	void start() {
+		int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+		int queueCapacity = Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY);
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "linklander-search-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, (search, rejectingExecutor) -> {
+					rejectingExecutor.purge();
+					if (!rejectingExecutor.isShutdown() && !rejectingExecutor.getQueue().offer(search)) {
+						search.run();
+					}
+				});
+		LOGGER.info("Searching with " + threads + " threads and up to " + queueCapacity + " waiting searches");
+	}
+
+	@PreDestroy
+	void stop() {
+		// running searches are not interrupted, see SearchComponentBase
+		executor.shutdown();
+	}
+
+	/**
+	 * @param search
+	 *            the search, which pushes its result to the UI itself
+	 * @return the future to cancel the search with
+	 */
+	public Future<?> submit(Runnable search) {
+		return executor.submit(search);
+	}
+}
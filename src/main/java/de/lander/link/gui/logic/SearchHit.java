@@ -14,6 +14,14 @@ public class SearchHit {
 	private double score = 0.0;
 	private Set<Tag> tags = new HashSet<Tag>();
 
+	/*
+	 * Sort keys, computed once per score, see SearchHitComparator
+	 */
+	private boolean sortKeysComputed = false;
+	private long scoreKey;
+	private long hotnessKey;
+	private long nameKey;
+
 	public SearchHit(Link link, double score, Tag... tags) {
 		this.link = link;
 		this.score = score;
@@ -36,6 +44,60 @@ public class SearchHit {
 
 	public void setScore(double score) {
 		this.score = score;
+		sortKeysComputed = false;
+	}
+
+	public void addScore(double score) {
+		this.score += score;
+		sortKeysComputed = false;
+	}
+
+	/**
+	 * @return the score as long with the same order
+	 */
+	long getScoreKey() {
+		computeSortKeys();
+		return scoreKey;
+	}
+
+	/**
+	 * @return the hotness rank of the link as long with the same order
+	 */
+	long getHotnessKey() {
+		computeSortKeys();
+		return hotnessKey;
+	}
+
+	/**
+	 * @return the first four characters of the name, ordered like the name
+	 *         if compared unsigned and not equal
+	 */
+	long getNameKey() {
+		computeSortKeys();
+		return nameKey;
+	}
+
+	private void computeSortKeys() {
+		if (sortKeysComputed) {
+			return;
+		}
+		scoreKey = sortableBits(score);
+		hotnessKey = sortableBits(link.getHotnessRank());
+		String name = link.getName();
+		nameKey = 0;
+		for (int i = 0; i < 4; i++) {
+			nameKey = nameKey << 16 | (i < name.length() ? name.charAt(i) : 0);
+		}
+		sortKeysComputed = true;
+	}
+
+	/**
+	 * Flips the bits of negative doubles, so the bits compare like the
+	 * doubles
+	 */
+	private static long sortableBits(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
 	}
 
 	public Set<Tag> getTags() {
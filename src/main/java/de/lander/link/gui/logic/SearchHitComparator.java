@@ -2,33 +2,53 @@ package de.lander.link.gui.logic;
 
 import java.util.Comparator;
 
+/**
+ * Orders hits best first by their precomputed sort keys, the strings are only
+ * compared if the keys are equal<br>
+ * Stateless, {@link #get()} returns a shared instance.
+ * 
+ * @author max
+ *
+ */
 public class SearchHitComparator implements Comparator<SearchHit> {
 
+	private static final SearchHitComparator INSTANCE = new SearchHitComparator();
+
 	public static SearchHitComparator get() {
-		return new SearchHitComparator();
+		return INSTANCE;
 	}
 	
 	@Override
 	public int compare(SearchHit h1, SearchHit h2) {
 		// 1) Sort by score
-		int scoreCompare = Double.compare(h2.getScore(), h1.getScore());
+		int scoreCompare = Long.compare(h2.getScoreKey(), h1.getScoreKey());
 		if (scoreCompare != 0) {
 			return scoreCompare;
 		}
 		
-		// 2) Sort by clicks
-		int clickCompare = h2.getLink().getClicks() - h1.getLink().getClicks();
+		// 2) Sort by recent clicks
+		int hotnessCompare = Long.compare(h2.getHotnessKey(), h1.getHotnessKey());
+		if (hotnessCompare != 0) {
+			return hotnessCompare;
+		}
+
+		// 3) Sort by clicks
+		int clickCompare = Integer.compare(h2.getLink().getClicks(), h1.getLink().getClicks());
 		if (clickCompare != 0) {
 			return clickCompare;
 		}
 
-		// 3) Sort by Name
-		int nameCompare = h2.getLink().getName().compareTo(h1.getLink().getName());
+		// 4) Sort by Name, the full names only if their beginning is equal
+		int nameCompare = Long.compareUnsigned(h2.getNameKey(), h1.getNameKey());
+		if (nameCompare != 0) {
+			return nameCompare;
+		}
+		nameCompare = h2.getLink().getName().compareTo(h1.getLink().getName());
 		if (nameCompare != 0) {
 			return nameCompare;
 		}
 
-		// 4) Sort by UUID
+		// 5) Sort by UUID
 		return h2.getLink().getUuid().compareTo(h1.getLink().getUuid());
 	}
 }
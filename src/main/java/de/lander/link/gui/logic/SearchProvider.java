@@ -1,9 +1,62 @@
 package de.lander.link.gui.logic;
 
+import java.util.Collection;
 import java.util.Set;
 
 
 public interface SearchProvider {
 
 	public Set<SearchHit> performSearch(String text);
+
+	/**
+	 * Searches and returns only the best hits, a higher limit continues the
+	 * result ("show more")
+	 * 
+	 * @param text
+	 *            the search text
+	 * @param limit
+	 *            the maximum number of hits to return
+	 * @return the best hits, best first, and the number of all hits
+	 */
+	public default SearchResult performSearch(String text, int limit) {
+		return performSearch(text, 0, limit);
+	}
+
+	/**
+	 * Searches and returns a page of the hits in order
+	 * 
+	 * @param text
+	 *            the search text
+	 * @param offset
+	 *            the number of best hits to skip
+	 * @param limit
+	 *            the maximum number of hits to return
+	 * @return the page of hits, best first, and the number of all hits
+	 */
+	public default SearchResult performSearch(String text, int offset, int limit) {
+		return TopHits.toResult(performSearch(text), offset, limit);
+	}
+
+	/**
+	 * Searches all hits without loading their tags, for callers which page
+	 * the hits themselves, see {@link #loadTags(Collection)}
+	 * 
+	 * @param text
+	 *            the search text
+	 * @return all hits, the tags may be missing
+	 */
+	public default Collection<SearchHit> searchUntagged(String text) {
+		return performSearch(text);
+	}
+
+	/**
+	 * Loads the tags of hits returned by {@link #searchUntagged(String)}, e.g.
+	 * of the page shown
+	 * 
+	 * @param hits
+	 *            hits without tags
+	 */
+	public default void loadTags(Collection<SearchHit> hits) {
+		// the hits of performSearch have their tags already
+	}
 }
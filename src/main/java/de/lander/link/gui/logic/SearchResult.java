@@ -0,0 +1,53 @@
+package de.lander.link.gui.logic;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of the hits of a search, ordered by {@link SearchHitComparator},
+ * together with the number of all hits
+ * 
+ * @author max
+ *
+ */
+public class SearchResult {
+
+	private final List<SearchHit> hits;
+	private final int offset;
+	private final int totalHits;
+
+	public SearchResult(List<SearchHit> hits, int offset, int totalHits) {
+		this.hits = Collections.unmodifiableList(hits);
+		this.offset = offset;
+		this.totalHits = totalHits;
+	}
+
+	/**
+	 * @return the hits of the page, best first
+	 */
+	public List<SearchHit> getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the position of the first hit of the page within all hits
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the number of all hits of the search, including those not
+	 *         returned
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * @return <code>true</code> if there are hits after this page
+	 */
+	public boolean hasMore() {
+		return totalHits > offset + hits.size();
+	}
+}
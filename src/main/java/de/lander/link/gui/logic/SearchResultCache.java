@@ -0,0 +1,206 @@
+package de.lander.link.gui.logic;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.logging.log4j.Logger;
+
+import de.lander.persistence.daos.CacheStatistics;
+import de.lander.persistence.daos.PersistenceGateway;
+import de.lander.persistence.daos.PersistenceListener;
+import de.lander.persistence.entities.Link;
+
+/**
+ * Caches the scored hits of a search by its tokens, shared by all users<br>
+ * The tokens are the key as a set, so "wiki jira" and "jira wiki" share an
+ * entry. Every save or delete of a link or tag starts a new generation and
+ * invalidates all entries at once, entries of older generations are never
+ * served. Flushed clicks do not, the click counts and hotness of cached hits
+ * are at most the time to live old. Entries expire after a time to live and the least recently used
+ * entry is evicted once the maximum size is reached. Both are set by the
+ * system properties {@link #TTL_PROPERTY} and {@link #MAX_SIZE_PROPERTY}.
+ *
+ * @author max
+ *
+ */
+@ApplicationScoped
+public class SearchResultCache implements PersistenceListener {
+
+	/**
+	 * System property for the seconds a result is cached
+	 */
+	public static final String TTL_PROPERTY = "linklander.searchCache.ttlSeconds";
+
+	/**
+	 * System property for the maximum number of cached results
+	 */
+	public static final String MAX_SIZE_PROPERTY = "linklander.searchCache.maxSize";
+
+	private static final long DEFAULT_TTL_SECONDS = 60;
+	private static final int DEFAULT_MAX_SIZE = 1000;
+
+	@Inject
+	protected PersistenceGateway persistenceGatewayImpl;
+	@Inject
+	private Logger LOGGER;
+
+	private final long ttlNanos = TimeUnit.SECONDS.toNanos(Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS));
+	private final int maxSize = Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private long generation = 0;
+	private final Map<Set<String>, Entry> entries = new LinkedHashMap<Set<String>, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 3061489411285206418L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Set<String>, Entry> eldest) {
+			if (size() > maxSize) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	@PostConstruct
+	void register() {
+		persistenceGatewayImpl.addPersistenceListener(this);
+		LOGGER.info("Caching " + maxSize + " search results for " + TimeUnit.NANOSECONDS.toSeconds(ttlNanos)
+				+ " seconds");
+	}
+
+	@PreDestroy
+	void close() {
+		persistenceGatewayImpl.removePersistenceListener(this);
+	}
+
+	/**
+	 * Returns the hits of the tokens from the cache or by searching them
+	 *
+	 * @param tokens
+	 *            the analyzed search text
+	 * @param search
+	 *            searches the hits of the tokens on a cache miss
+	 * @return the hits by link uuid, new hits without tags the caller may
+	 *         change
+	 */
+	public Map<String, SearchHit> getHits(Set<String> tokens,
+			Function<Set<String>, Map<String, SearchHit>> search) {
+		Set<String> key = Collections.unmodifiableSet(new HashSet<String>(tokens));
+		long searchedInGeneration;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.generation == generation
+					&& System.nanoTime() - entry.createdNanos < ttlNanos) {
+				hits.increment();
+				return entry.toHits();
+			}
+			searchedInGeneration = generation;
+		}
+
+		misses.increment();
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Search result cache miss for " + key + ", " + getStatistics());
+		}
+		Map<String, SearchHit> searched = search.apply(key);
+		Entry entry = new Entry(searchedInGeneration, searched);
+		synchronized (this) {
+			// a result searched while the data changed may be stale already
+			if (generation == searchedInGeneration) {
+				entries.put(key, entry);
+			}
+		}
+		return entry.toHits();
+	}
+
+	/**
+	 * @return the current generation, every save or delete of a link or tag
+	 *         starts a new one; results of an older generation may be stale
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return the statistics of the cached results
+	 */
+	public CacheStatistics getStatistics() {
+		int size;
+		synchronized (this) {
+			size = entries.size();
+		}
+		return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), size);
+	}
+
+	private synchronized void invalidate() {
+		generation++;
+		entries.clear();
+	}
+
+	@Override
+	public void linkSaved(String linkUUID) {
+		invalidate();
+	}
+
+	@Override
+	public void linkDeleted(String linkUUID) {
+		invalidate();
+	}
+
+	@Override
+	public void tagSaved(String tagUUID) {
+		invalidate();
+	}
+
+	@Override
+	public void tagDeleted(String tagUUID) {
+		invalidate();
+	}
+
+	/**
+	 * The immutable links and scores of a search, hits are mutable and
+	 * created for every caller
+	 */
+	private static final class Entry {
+
+		private final long generation;
+		private final long createdNanos = System.nanoTime();
+		private final Link[] links;
+		private final double[] scores;
+
+		Entry(long generation, Map<String, SearchHit> hits) {
+			this.generation = generation;
+			this.links = new Link[hits.size()];
+			this.scores = new double[hits.size()];
+			int i = 0;
+			for (SearchHit hit : hits.values()) {
+				links[i] = hit.getLink();
+				scores[i] = hit.getScore();
+				i++;
+			}
+		}
+
+		Map<String, SearchHit> toHits() {
+			Map<String, SearchHit> hits = new HashMap<String, SearchHit>(links.length * 2);
+			for (int i = 0; i < links.length; i++) {
+				hits.put(links[i].getUuid(), new SearchHit(links[i], scores[i]));
+			}
+			return hits;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package de.lander.link.gui.logic;
+
+import java.util.Comparator;
+
+/**
+ * A completion offered for the text typed into the search field, either a
+ * link or a tag
+ *
+ * @author max
+ *
+ */
+public final class Suggestion {
+
+	public enum Type {
+		LINK, TAG;
+	}
+
+	/**
+	 * Orders by clicks descending, then by text
+	 */
+	public static final Comparator<Suggestion> BY_CLICKS = new Comparator<Suggestion>() {
+		@Override
+		public int compare(Suggestion s1, Suggestion s2) {
+			int clickCompare = Integer.compare(s2.clicks, s1.clicks);
+			if (clickCompare != 0) {
+				return clickCompare;
+			}
+			int textCompare = s1.text.compareToIgnoreCase(s2.text);
+			if (textCompare != 0) {
+				return textCompare;
+			}
+			return s1.uuid.compareTo(s2.uuid);
+		}
+	};
+
+	private final Type type;
+	private final String uuid;
+	private final String text;
+	private final String url;
+	private final int clicks;
+
+	public Suggestion(Type type, String uuid, String text, String url, int clicks) {
+		this.type = type;
+		this.uuid = uuid;
+		this.text = text;
+		this.url = url;
+		this.clicks = clicks;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getUuid() {
+		return uuid;
+	}
+
+	/**
+	 * @return the name of the link or tag
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the url of a link, <code>null</code> for a tag
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	public int getClicks() {
+		return clicks;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * type.hashCode() + uuid.hashCode();
+	}
+
+	/**
+	 * Suggestions are equal if they refer to the same link or tag
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Suggestion)) {
+			return false;
+		}
+		Suggestion other = (Suggestion) obj;
+		return type == other.type && uuid.equals(other.uuid);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Suggestion [type=").append(type).append(", text=").append(text).append(", clicks=")
+				.append(clicks).append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,210 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.logging.log4j.Logger;
+
+import de.lander.link.gui.logic.Suggestion.Type;
+import de.lander.persistence.daos.PersistenceGateway;
+import de.lander.persistence.daos.PersistenceListener;
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Completes the text typed into the search field with link and tag names,
+ * ranked by clicks<br>
+ * Every name is completed from its beginning and from the beginning of each of
+ * its words, e.g. "prod" completes "Grafana Prod".
+ *
+ * @author max
+ *
+ */
+@ApplicationScoped
+public class SuggestionService implements PersistenceListener {
+
+	/**
+	 * The maximum number of suggestions per completion
+	 */
+	public static final int MAX_SUGGESTIONS = 10;
+
+	@Inject
+	protected PersistenceGateway persistenceGatewayImpl;
+	@Inject
+	private Logger LOGGER;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Applies the changes read outside of the lock in order */
+	private final OrderedUpdates updates = new OrderedUpdates(lock.writeLock());
+	private final SuggestionTrie trie = new SuggestionTrie(MAX_SUGGESTIONS);
+	/** The current suggestion per link or tag uuid, to remove it on changes */
+	private final Map<String, Suggestion> suggestions = new HashMap<String, Suggestion>();
+
+	@PostConstruct
+	void buildTrie() {
+		persistenceGatewayImpl.addPersistenceListener(this);
+
+		lock.writeLock().lock();
+		try {
+			for (Link link : persistenceGatewayImpl.getAllLinks()) {
+				put(toSuggestion(link));
+			}
+			for (Tag tag : persistenceGatewayImpl.getAllTags()) {
+				put(toSuggestion(tag));
+			}
+			LOGGER.info("Built suggestion trie for " + suggestions.size() + " links and tags");
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@PreDestroy
+	void close() {
+		persistenceGatewayImpl.removePersistenceListener(this);
+	}
+
+	/**
+	 * Completes the given text
+	 *
+	 * @param text
+	 *            the typed text
+	 * @param limit
+	 *            the maximum number of suggestions, at most
+	 *            {@link #MAX_SUGGESTIONS}
+	 * @return the suggestions ordered by clicks, empty for a blank text
+	 */
+	public List<Suggestion> suggest(String text, int limit) {
+		String prefix = text.trim();
+		if (prefix.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		int maxSuggestions = Math.min(limit, MAX_SUGGESTIONS);
+		lock.readLock().lock();
+		try {
+			List<Suggestion> cached = trie.completeCached(prefix, maxSuggestions);
+			if (cached != null) {
+				return new ArrayList<Suggestion>(cached);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		// Collecting fills the cache of the prefix, which is a change
+		lock.writeLock().lock();
+		try {
+			return new ArrayList<Suggestion>(trie.complete(prefix, maxSuggestions));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static Suggestion toSuggestion(Link link) {
+		return new Suggestion(Type.LINK, link.getUuid(), link.getName(), link.getUrl(), link.getClicks());
+	}
+
+	private static Suggestion toSuggestion(Tag tag) {
+		return new Suggestion(Type.TAG, tag.getUuid(), tag.getName(), null, tag.getClicks());
+	}
+
+	private void put(Suggestion suggestion) {
+		remove(suggestion.getUuid());
+		for (String key : keys(suggestion.getText())) {
+			trie.add(key, suggestion);
+		}
+		suggestions.put(suggestion.getUuid(), suggestion);
+	}
+
+	/**
+	 * Re-ranks a suggestion, whose text did not change
+	 */
+	private void updateClicks(Suggestion suggestion) {
+		if (!suggestions.containsKey(suggestion.getUuid())) {
+			return;
+		}
+		suggestions.put(suggestion.getUuid(), suggestion);
+		for (String key : keys(suggestion.getText())) {
+			trie.update(key, suggestion);
+		}
+	}
+
+	private void remove(String uuid) {
+		Suggestion suggestion = suggestions.remove(uuid);
+		if (suggestion != null) {
+			for (String key : keys(suggestion.getText())) {
+				trie.remove(key, suggestion);
+			}
+		}
+	}
+
+	/**
+	 * @return the name and each suffix of the name starting with a word
+	 */
+	private static List<String> keys(String name) {
+		List<String> keys = new ArrayList<String>();
+		String trimmed = name.trim();
+		keys.add(trimmed);
+		for (int i = 1; i < trimmed.length(); i++) {
+			if (!Character.isLetterOrDigit(trimmed.charAt(i - 1)) && Character.isLetterOrDigit(trimmed.charAt(i))) {
+				keys.add(trimmed.substring(i));
+			}
+		}
+		return keys;
+	}
+
+	// /////////////
+	// TRIE MAINTENANCE
+	// /////////////
+
+	@Override
+	public void linkSaved(String linkUUID) {
+		updates.apply(linkUUID, () -> {
+			Link link = persistenceGatewayImpl.getLinkByUUID(linkUUID);
+			return link == null ? () -> remove(linkUUID) : () -> put(toSuggestion(link));
+		});
+	}
+
+	@Override
+	public void linkDeleted(String linkUUID) {
+		updates.apply(linkUUID, () -> () -> remove(linkUUID));
+	}
+
+	@Override
+	public void tagSaved(String tagUUID) {
+		updates.apply(tagUUID, () -> {
+			Tag tag = persistenceGatewayImpl.getTagByUUID(tagUUID);
+			return tag == null ? () -> remove(tagUUID) : () -> put(toSuggestion(tag));
+		});
+	}
+
+	@Override
+	public void linkClicked(String linkUUID) {
+		updates.applyPartial(linkUUID, () -> {
+			Link link = persistenceGatewayImpl.getLinkByUUID(linkUUID);
+			return link == null ? null : () -> updateClicks(toSuggestion(link));
+		});
+	}
+
+	@Override
+	public void tagClicked(String tagUUID) {
+		updates.applyPartial(tagUUID, () -> {
+			Tag tag = persistenceGatewayImpl.getTagByUUID(tagUUID);
+			return tag == null ? null : () -> updateClicks(toSuggestion(tag));
+		});
+	}
+
+	@Override
+	public void tagDeleted(String tagUUID) {
+		updates.apply(tagUUID, () -> () -> remove(tagUUID));
+	}
+}
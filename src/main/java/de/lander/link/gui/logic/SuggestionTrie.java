@@ -0,0 +1,252 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Prefix trie mapping lower case keys to {@link Suggestion}s<br>
+ * Every node caches the best suggestions of its subtree, ordered by
+ * {@link Suggestion#BY_CLICKS}. Adding and removing invalidates the caches
+ * along the path of the changed key only, so a completion is a walk down the
+ * prefix plus, at most once per change, a scan of the subtree. New click
+ * counts re-rank the cached suggestions in place.<br>
+ * Changes have to be synchronized by the owner. {@link #completeCached(String, int)}
+ * may run concurrently with itself; {@link #complete(String, int)} fills the
+ * caches and needs exclusive access like a change.
+ *
+ * @author max
+ *
+ */
+class SuggestionTrie {
+
+	private final int cachedSuggestions;
+	private final TrieNode root = new TrieNode();
+
+	/**
+	 * @param cachedSuggestions
+	 *            the number of best suggestions cached per node, which is the
+	 *            maximum limit of {@link #complete(String, int)}
+	 */
+	SuggestionTrie(int cachedSuggestions) {
+		this.cachedSuggestions = cachedSuggestions;
+	}
+
+	/**
+	 * @param key
+	 *            the key to complete, normalized to lower case
+	 * @param suggestion
+	 *            the suggestion offered for every prefix of the key
+	 */
+	void add(String key, Suggestion suggestion) {
+		TrieNode node = root;
+		node.bestSuggestions = null;
+		for (char character : normalize(key).toCharArray()) {
+			TrieNode child = node.children.get(character);
+			if (child == null) {
+				child = new TrieNode();
+				node.children.put(character, child);
+			}
+			node = child;
+			node.bestSuggestions = null;
+		}
+		node.suggestions.add(suggestion);
+	}
+
+	/**
+	 * @param key
+	 *            the key the suggestion was added with
+	 * @param suggestion
+	 *            the suggestion to remove
+	 */
+	void remove(String key, Suggestion suggestion) {
+		List<TrieNode> path = new ArrayList<TrieNode>();
+		TrieNode node = root;
+		path.add(node);
+		for (char character : normalize(key).toCharArray()) {
+			node = node.children.get(character);
+			if (node == null) {
+				return;
+			}
+			path.add(node);
+		}
+		if (!node.suggestions.remove(suggestion)) {
+			return;
+		}
+
+		for (TrieNode pathNode : path) {
+			pathNode.bestSuggestions = null;
+		}
+		// prune the nodes which lead to nothing anymore
+		String normalizedKey = normalize(key);
+		for (int i = path.size() - 1; i > 0; i--) {
+			TrieNode pathNode = path.get(i);
+			if (!pathNode.suggestions.isEmpty() || !pathNode.children.isEmpty()) {
+				break;
+			}
+			path.get(i - 1).children.remove(normalizedKey.charAt(i - 1));
+		}
+	}
+
+	/**
+	 * Replaces a suggestion whose clicks changed, keeping the caches valid
+	 *
+	 * @param key
+	 *            the key the suggestion was added with
+	 * @param updated
+	 *            the suggestion with the new click count, equal to the one
+	 *            added
+	 */
+	void update(String key, Suggestion updated) {
+		List<TrieNode> path = new ArrayList<TrieNode>();
+		TrieNode node = root;
+		path.add(node);
+		for (char character : normalize(key).toCharArray()) {
+			node = node.children.get(character);
+			if (node == null) {
+				return;
+			}
+			path.add(node);
+		}
+		if (!node.suggestions.remove(updated)) {
+			return;
+		}
+		node.suggestions.add(updated);
+
+		for (TrieNode pathNode : path) {
+			pathNode.bestSuggestions = rerank(pathNode.bestSuggestions, updated);
+		}
+	}
+
+	/**
+	 * Completes from the caches only, may run concurrently with other
+	 * completions
+	 *
+	 * @param prefix
+	 *            the typed prefix, normalized to lower case
+	 * @param limit
+	 *            the maximum number of suggestions
+	 * @return the best suggestions for keys starting with the prefix,
+	 *         <code>null</code> if they are not cached and
+	 *         {@link #complete(String, int)} has to collect them
+	 */
+	List<Suggestion> completeCached(String prefix, int limit) {
+		TrieNode node = find(prefix);
+		if (node == null) {
+			return Collections.emptyList();
+		}
+		List<Suggestion> best = node.bestSuggestions;
+		return best == null ? null : limit(best, limit);
+	}
+
+	/**
+	 * Completes and caches the result, needs exclusive access
+	 *
+	 * @param prefix
+	 *            the typed prefix, normalized to lower case
+	 * @param limit
+	 *            the maximum number of suggestions
+	 * @return the best suggestions for keys starting with the prefix
+	 */
+	List<Suggestion> complete(String prefix, int limit) {
+		TrieNode node = find(prefix);
+		if (node == null) {
+			return Collections.emptyList();
+		}
+		if (node.bestSuggestions == null) {
+			node.bestSuggestions = collectBest(node);
+		}
+		return limit(node.bestSuggestions, limit);
+	}
+
+	private TrieNode find(String prefix) {
+		TrieNode node = root;
+		for (char character : normalize(prefix).toCharArray()) {
+			node = node.children.get(character);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	private static List<Suggestion> limit(List<Suggestion> best, int limit) {
+		return best.size() <= limit ? best : best.subList(0, limit);
+	}
+
+	/**
+	 * @return the cached best suggestions with the updated one in its new
+	 *         place, <code>null</code> if that place is unknown
+	 */
+	private List<Suggestion> rerank(List<Suggestion> best, Suggestion updated) {
+		if (best == null) {
+			return null;
+		}
+		// a full cache does not know the suggestions below its last one
+		boolean complete = best.size() < cachedSuggestions;
+		List<Suggestion> reranked = new ArrayList<Suggestion>(best);
+		int index = reranked.indexOf(updated);
+		if (index >= 0) {
+			Suggestion previous = reranked.remove(index);
+			if (!complete && Suggestion.BY_CLICKS.compare(updated, previous) > 0) {
+				return null;
+			}
+		} else if (complete) {
+			return null;
+		} else if (Suggestion.BY_CLICKS.compare(updated, reranked.get(reranked.size() - 1)) > 0) {
+			return best;
+		} else {
+			reranked.remove(reranked.size() - 1);
+		}
+		reranked.add(updated);
+		Collections.sort(reranked, Suggestion.BY_CLICKS);
+		return Collections.unmodifiableList(reranked);
+	}
+
+	private List<Suggestion> collectBest(TrieNode start) {
+		// min-heap of the best suggestions so far, the worst one on top
+		PriorityQueue<Suggestion> heap = new PriorityQueue<Suggestion>(cachedSuggestions + 1,
+				Collections.reverseOrder(Suggestion.BY_CLICKS));
+		Set<Suggestion> seen = new HashSet<Suggestion>();
+
+		Deque<TrieNode> pending = new ArrayDeque<TrieNode>();
+		pending.push(start);
+		while (!pending.isEmpty()) {
+			TrieNode node = pending.pop();
+			for (Suggestion suggestion : node.suggestions) {
+				// a suggestion can be reachable by several keys
+				if (seen.add(suggestion)) {
+					heap.offer(suggestion);
+					if (heap.size() > cachedSuggestions) {
+						heap.poll();
+					}
+				}
+			}
+			for (TrieNode child : node.children.values()) {
+				pending.push(child);
+			}
+		}
+
+		List<Suggestion> best = new ArrayList<Suggestion>(heap);
+		Collections.sort(best, Suggestion.BY_CLICKS);
+		return Collections.unmodifiableList(best);
+	}
+
+	private static String normalize(String key) {
+		return key.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static final class TrieNode {
+		final Map<Character, TrieNode> children = new HashMap<Character, TrieNode>(4);
+		final Set<Suggestion> suggestions = new HashSet<Suggestion>(2);
+		List<Suggestion> bestSuggestions;
+	}
+}
@@ -0,0 +1,142 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sorted dictionary of the terms of all documents, with the number of
+ * documents per term, finding the terms within a small edit distance of a
+ * mistyped token<br>
+ * The search runs the Levenshtein automaton of the token over the sorted
+ * terms: the edit distance rows of a prefix are shared by all terms starting
+ * with it, and once no continuation of a prefix can be close enough, all
+ * terms with that prefix are skipped with a single seek. The cost depends on
+ * the number of live prefixes, not on the size of the dictionary. Like in
+ * most spell checkers the first characters have to be typed correctly, one
+ * per allowed edit, which bounds the number of live prefixes.<br>
+ * Not thread safe, the owner has to synchronize access.
+ *
+ * @author max
+ *
+ */
+class TermDictionary {
+
+	private final TreeMap<String, Integer> documentCounts = new TreeMap<String, Integer>();
+
+	/**
+	 * @param terms
+	 *            the distinct terms of a new document
+	 */
+	void add(Collection<String> terms) {
+		for (String term : terms) {
+			documentCounts.merge(term, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * @param terms
+	 *            the distinct terms of a removed document
+	 */
+	void remove(Collection<String> terms) {
+		for (String term : terms) {
+			documentCounts.computeIfPresent(term, (key, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	/**
+	 * @return the number of distinct terms
+	 */
+	int size() {
+		return documentCounts.size();
+	}
+
+	/**
+	 * Finds the terms a mistyped token could have meant, terms containing the
+	 * token are no expansions
+	 *
+	 * @param token
+	 *            the lower case token, longer than the maximum distance
+	 * @param maxDistance
+	 *            the maximum number of edits, at least 1
+	 * @param limit
+	 *            the maximum number of terms
+	 * @return the nearest terms with their edit distance, the nearest and most
+	 *         frequent first
+	 */
+	Map<String, Integer> expand(String token, int maxDistance, int limit) {
+		int length = token.length();
+		// rows of deeper prefixes are dead, they are longer than the token
+		// plus the edits
+		int[][] rows = new int[length + maxDistance + 2][length + 1];
+		for (int j = 0; j <= length; j++) {
+			rows[0][j] = j;
+		}
+
+		Map<String, Integer> distances = new LinkedHashMap<String, Integer>();
+		String fixedPrefix = token.substring(0, maxDistance);
+		String end = fixedPrefix + Character.MAX_VALUE;
+		// The prefix the rows are computed for, up to its length
+		String computedPrefix = "";
+		String term = documentCounts.ceilingKey(fixedPrefix);
+		while (term != null && term.compareTo(end) < 0) {
+			int depth = commonPrefixLength(computedPrefix, term);
+			boolean dead = false;
+			while (depth < term.length() && !dead) {
+				depth++;
+				dead = computeRow(token, term.charAt(depth - 1), rows[depth - 1], rows[depth]) > maxDistance;
+			}
+			computedPrefix = term.substring(0, depth);
+
+			if (dead) {
+				// no term starting with the prefix is close enough
+				term = documentCounts.higherKey(computedPrefix + Character.MAX_VALUE);
+				continue;
+			}
+			int distance = rows[depth][length];
+			if (distance <= maxDistance && !term.contains(token)) {
+				distances.put(term, distance);
+			}
+			term = documentCounts.higherKey(term);
+		}
+
+		List<String> matches = new ArrayList<String>(distances.keySet());
+		matches.sort(Comparator.<String> comparingInt(distances::get)
+				.thenComparing(Comparator.<String> comparingInt(documentCounts::get).reversed()));
+		Map<String, Integer> expansions = new LinkedHashMap<String, Integer>();
+		for (String match : matches.subList(0, Math.min(limit, matches.size()))) {
+			expansions.put(match, distances.get(match));
+		}
+		return expansions;
+	}
+
+	/**
+	 * Computes the edit distances of the prefix extended by a character to all
+	 * prefixes of the token
+	 *
+	 * @return the smallest distance of the row
+	 */
+	private static int computeRow(String token, char character, int[] previous, int[] row) {
+		row[0] = previous[0] + 1;
+		int min = row[0];
+		for (int j = 1; j < row.length; j++) {
+			int substitution = previous[j - 1] + (token.charAt(j - 1) == character ? 0 : 1);
+			row[j] = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1), substitution);
+			min = Math.min(min, row[j]);
+		}
+		return min;
+	}
+
+	private static int commonPrefixLength(String a, String b) {
+		int max = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < max && a.charAt(i) == b.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+}
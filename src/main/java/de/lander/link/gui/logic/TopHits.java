@@ -0,0 +1,57 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Selects the best hits without sorting all of them<br>
+ * A heap bounded to the limit keeps the worst of the best hits on top, so the
+ * selection costs O(n log k) instead of O(n log n) for n hits and limit k. The
+ * heap holds indexes into the primitive sort keys of a {@link HitOrder}.
+ * 
+ * @author max
+ *
+ */
+public final class TopHits {
+
+	private TopHits() {
+	}
+
+	/**
+	 * @param hits
+	 *            all hits
+	 * @param limit
+	 *            the maximum number of hits to select
+	 * @return the best hits ordered by {@link SearchHitComparator}, best first
+	 */
+	public static List<SearchHit> select(Collection<SearchHit> hits, int limit) {
+		if (limit <= 0 || hits.isEmpty()) {
+			return new ArrayList<SearchHit>();
+		}
+
+		HitOrder order = new HitOrder(hits);
+		int[] best = order.select(limit);
+		List<SearchHit> selected = new ArrayList<SearchHit>(best.length);
+		for (int index : best) {
+			selected.add(order.get(index));
+		}
+		return selected;
+	}
+
+	/**
+	 * @param hits
+	 *            all hits
+	 * @param offset
+	 *            the number of best hits to skip
+	 * @param limit
+	 *            the maximum number of hits to select after the skipped ones
+	 * @return the selected page of hits and the number of all hits
+	 */
+	public static SearchResult toResult(Collection<SearchHit> hits, int offset, int limit) {
+		int end = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+		List<SearchHit> best = select(hits, end);
+		List<SearchHit> page = new ArrayList<SearchHit>(best.subList(Math.min(offset, best.size()), best.size()));
+		return new SearchResult(page, offset, hits.size());
+	}
+}
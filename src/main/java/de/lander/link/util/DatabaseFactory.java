@@ -65,7 +65,7 @@ public class DatabaseFactory {
 		LOGGER.debug("bean.stereotypes " + bean.getStereotypes());
 		LOGGER.debug("bean.types " + bean.getTypes());
 		
-		String storeDir = PropertiesLoader.getBaseDirectory() + "/db.neo4j/";
+		String storeDir = getStoreDirectory();
 		
 		return new GraphDatabaseFactory()
 		.newEmbeddedDatabaseBuilder(storeDir)
@@ -75,4 +75,11 @@ public class DatabaseFactory {
 				.setConfig(GraphDatabaseSettings.array_block_size, "300")
 				.newGraphDatabase();
 	}
+
+	/**
+	 * @return the store directory of the database, within the base directory
+	 */
+	public static String getStoreDirectory() {
+		return PropertiesLoader.getBaseDirectory() + "/db.neo4j/";
+	}
 }
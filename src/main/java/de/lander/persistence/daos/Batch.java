@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import de.lander.persistence.entities.Link;
+
+/**
+ * Unit of work collecting link, tag and tagging changes, which are written in
+ * a single transaction by {@link #commit()}<br>
+ * Nothing is written before the commit, and nothing is written at all if one
+ * of the changes fails. The {@link PersistenceListener}s are notified once per
+ * changed link and tag after the commit. Obtained by
+ * {@link PersistenceGateway#batch()}, not thread safe.
+ *
+ * @author mvogel
+ *
+ */
+public interface Batch {
+
+	/**
+	 * Adds a new link, see {@link PersistenceGateway#addLink(String, String, String)}
+	 *
+	 * @param name
+	 *            the name the link can be searched later (MANDATORY)
+	 * @param url
+	 *            the url (MANDATORY)
+	 * @param title
+	 *            the title of the weburl (Optional)
+	 * @return uuid of the link, valid within the batch before the commit
+	 */
+	String addLink(String name, String url, String title);
+
+	/**
+	 * Sets a property of a link, see
+	 * {@link PersistenceGateway#setLinkPropertyValue(String, String, String)}
+	 *
+	 * @param linkUUID
+	 *            the uuid of the link (MANDATORY)
+	 * @param property
+	 *            the property, e.g. {@link Link#NAME} (MANDATORY)
+	 * @param value
+	 *            the new value
+	 */
+	void setLinkPropertyValue(String linkUUID, String property, String value);
+
+	/**
+	 * Adds a new tag, see {@link PersistenceGateway#addTag(String, String)}
+	 *
+	 * @param name
+	 *            the name of the tag (MANDATORY)
+	 * @param description
+	 *            the description of the tag, at most 255 characters
+	 * @return uuid of the tag, valid within the batch before the commit
+	 */
+	String addTag(String name, String description);
+
+	/**
+	 * Tags a link
+	 *
+	 * @param linkUUID
+	 *            the uuid of the link (MANDATORY)
+	 * @param tagUUID
+	 *            the uuid of the tag (MANDATORY)
+	 */
+	void addTagToLink(String linkUUID, String tagUUID);
+
+	/**
+	 * Removes a tag from a link
+	 *
+	 * @param linkUUID
+	 *            the uuid of the link (MANDATORY)
+	 * @param tagUUID
+	 *            the uuid of the tag (MANDATORY)
+	 */
+	void removeTagFromLink(String linkUUID, String tagUUID);
+
+	/**
+	 * Writes all changes in one transaction, a batch can be committed once
+	 *
+	 * @throws {@link IllegalArgumentException} if a change fails, e.g.
+	 *         because the link does not exist. No change is written then.
+	 * @throws {@link IllegalStateException} if the batch was already committed
+	 */
+	void commit();
+}
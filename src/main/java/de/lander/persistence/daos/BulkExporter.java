@@ -0,0 +1,232 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Relationships;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Exports all tags and links as JSON Lines, one object per line, the backup
+ * restored by the {@link BulkImporter}<br>
+ * A complete export writes the tags first, with uuid, name, description and
+ * click count, tags without links included. Then it writes the links, with
+ * uuid, name, url, title, click count, score, the {@link ClickHistory} and the
+ * uuids and names of their tags. The lines have a <code>type</code> of
+ * <code>tag</code> or <code>link</code>.<br>
+ * The nodes are read in chunks in node id order, each chunk in its own short
+ * read transaction, see {@link NodeScan}, and written through a streaming
+ * generator, so the memory needed does not depend on the number of links and
+ * the time grows linearly with it. Every line carries the node id as
+ * <code>id</code>; an interrupted export resumes with the links after the id
+ * of the last complete link line.
+ *
+ * @author mvogel
+ *
+ */
+public class BulkExporter {
+
+	/**
+	 * The cursor to export from the first link on, with all tags
+	 */
+	public static final long START = -1;
+
+	/**
+	 * The default number of links read per transaction
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * The field of the record type
+	 */
+	static final String TYPE = "type";
+
+	/**
+	 * The type of tag records
+	 */
+	static final String TYPE_TAG = "tag";
+
+	/**
+	 * The type of link records
+	 */
+	static final String TYPE_LINK = "link";
+
+	/**
+	 * The field of the tag uuids of a link
+	 */
+	static final String TAG_UUIDS = "tagUuids";
+
+	private static final RelationshipType TAGGED_RELATIONSHIP = DynamicRelationshipType
+			.withName(Relationships.TAGGED);
+
+	private final GraphDatabaseService graphDb;
+	private final int chunkSize;
+
+	/**
+	 * @param graphDb
+	 *            the database (MANDATORY)
+	 * @param chunkSize
+	 *            the number of links read per transaction
+	 */
+	public BulkExporter(final GraphDatabaseService graphDb, final int chunkSize) {
+		Validate.notNull(graphDb);
+		Validate.isTrue(chunkSize > 0, "the chunk size must be positive");
+		this.graphDb = graphDb;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Exports all tags and then the links, if the cursor is {@link #START},
+	 * otherwise the links after the cursor
+	 *
+	 * @param output
+	 *            the output, flushed after every chunk but not closed
+	 *            (MANDATORY)
+	 * @param afterNodeId
+	 *            the node id of the last exported link, {@link #START} for a
+	 *            complete export
+	 * @return the highest node id looked at, the cursor to resume with; the
+	 *         given cursor if there were no more nodes
+	 * @throws IOException
+	 *             if the output cannot be written
+	 */
+	public long exportLinks(final Writer output, final long afterNodeId) throws IOException {
+		Validate.notNull(output);
+
+		long start = System.nanoTime();
+		long cursor;
+		long tags = 0;
+		long links;
+		try (JsonGenerator generator = new JsonFactory().createGenerator(output)) {
+			// the output belongs to the caller
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+
+			if (afterNodeId == START) {
+				tags = exportNodes(generator, Tag.LABEL, START)[1];
+			}
+			long[] exported = exportNodes(generator, Link.LABEL, afterNodeId);
+			cursor = exported[0];
+			links = exported[1];
+		}
+
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+		PersistenceGatewayImpl.LOGGER.info("Exported {} tags and {} links after node {} up to node {} in {} ms",
+				new Object[] { tags, links, afterNodeId, cursor, millis });
+		return cursor;
+	}
+
+	/**
+	 * Writes the nodes of a label after the cursor, a chunk per transaction
+	 *
+	 * @return the cursor after the last chunk and the number of written nodes
+	 */
+	private long[] exportNodes(final JsonGenerator generator, final Label label, final long afterNodeId)
+			throws IOException {
+		long cursor = afterNodeId;
+		long exported = 0;
+		boolean exhausted = false;
+		while (!exhausted) {
+			try (Transaction tx = this.graphDb.beginTx()) {
+				NodeScan nodes = new NodeScan(this.graphDb, cursor, label);
+				for (int inChunk = 0; inChunk < this.chunkSize; inChunk++) {
+					Node node = nodes.next();
+					if (node == null) {
+						exhausted = true;
+						break;
+					}
+					if (label.equals(Tag.LABEL)) {
+						writeTag(generator, node);
+					} else {
+						writeLink(generator, node);
+					}
+					exported++;
+				}
+				cursor = nodes.getCursor();
+				tx.success();
+			}
+			// complete lines only, so the cursor of the last line is valid
+			generator.flush();
+		}
+		return new long[] { cursor, exported };
+	}
+
+	private static void writeTag(final JsonGenerator generator, final Node tag) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField(TYPE, TYPE_TAG);
+		generator.writeNumberField("id", tag.getId());
+		generator.writeStringField(Tag.UUID, String.valueOf(tag.getProperty(Tag.UUID)));
+		generator.writeStringField(Tag.NAME, String.valueOf(tag.getProperty(Tag.NAME)));
+		generator.writeStringField(Tag.DESCRIPTION, String.valueOf(tag.getProperty(Tag.DESCRIPTION, "")));
+		generator.writeNumberField(Tag.CLICK_COUNT,
+				Integer.parseInt(String.valueOf(tag.getProperty(Tag.CLICK_COUNT, 0))));
+		generator.writeEndObject();
+		generator.writeRaw('\n');
+	}
+
+	private static void writeLink(final JsonGenerator generator, final Node link) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField(TYPE, TYPE_LINK);
+		generator.writeNumberField("id", link.getId());
+		generator.writeStringField(Link.UUID, String.valueOf(link.getProperty(Link.UUID)));
+		generator.writeStringField(Link.NAME, String.valueOf(link.getProperty(Link.NAME)));
+		generator.writeStringField(Link.URL, String.valueOf(link.getProperty(Link.URL)));
+		generator.writeStringField(Link.TITLE, String.valueOf(link.getProperty(Link.TITLE, "")));
+		generator.writeNumberField(Link.CLICK_COUNT,
+				Integer.parseInt(String.valueOf(link.getProperty(Link.CLICK_COUNT, 0))));
+		generator.writeNumberField(Link.SCORE, Double.parseDouble(String.valueOf(link.getProperty(Link.SCORE, 0))));
+		if (link.hasProperty(Link.NEWEST_CLICK_HOUR)) {
+			writeArray(generator, Link.HOURLY_CLICKS, (int[]) link.getProperty(Link.HOURLY_CLICKS));
+			writeArray(generator, Link.DAILY_CLICKS, (int[]) link.getProperty(Link.DAILY_CLICKS));
+			generator.writeNumberField(Link.NEWEST_CLICK_HOUR, (Long) link.getProperty(Link.NEWEST_CLICK_HOUR));
+			generator.writeNumberField(Link.HOTNESS, (Double) link.getProperty(Link.HOTNESS));
+			generator.writeNumberField(Link.HOTNESS_UPDATED, (Long) link.getProperty(Link.HOTNESS_UPDATED));
+		}
+
+		List<Node> tags = new ArrayList<Node>();
+		for (Relationship tagged : link.getRelationships(Direction.INCOMING, TAGGED_RELATIONSHIP)) {
+			tags.add(tagged.getStartNode());
+		}
+		generator.writeArrayFieldStart(TAG_UUIDS);
+		for (Node tag : tags) {
+			generator.writeString(String.valueOf(tag.getProperty(Tag.UUID)));
+		}
+		generator.writeEndArray();
+		// the names keep the lines readable and importable as a bookmark list
+		generator.writeArrayFieldStart("tags");
+		for (Node tag : tags) {
+			generator.writeString(String.valueOf(tag.getProperty(Tag.NAME)));
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+		generator.writeRaw('\n');
+	}
+
+	private static void writeArray(final JsonGenerator generator, final String field, final int[] values)
+			throws IOException {
+		generator.writeArrayFieldStart(field);
+		for (int value : values) {
+			generator.writeNumber(value);
+		}
+		generator.writeEndArray();
+	}
+}
@@ -0,0 +1,713 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import de.lander.link.util.DatabaseFactory;
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Relationships;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Imports links with their tags from JSON or CSV, e.g. bookmark exports<br>
+ * The input is parsed as a stream, one link at a time, and written in chunks
+ * of links per transaction. Tags are referenced by name, found or created
+ * once per import and cached by name.<br>
+ * JSON is an array or a sequence of objects
+ * <code>{"name": ..., "url": ..., "title": ..., "tags": ["a", "b"]}</code>,
+ * CSV has a header line with the columns <code>name,url,title,tags</code> and
+ * the tags separated by <code>;</code>. Links without name or url are skipped.
+ * <br>
+ * The lines of the {@link BulkExporter} restore the tags and links with their
+ * uuids, click counts, scores and click histories: tag records create the
+ * tags, links reference them by uuid. Records whose uuid exists already in the
+ * database are skipped, so an interrupted restore can be repeated.
+ *
+ * @author mvogel
+ *
+ */
+public class BulkImporter {
+
+	/**
+	 * The default number of links written per transaction
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+	private static final RelationshipType TAGGED_RELATIONSHIP = DynamicRelationshipType
+			.withName(Relationships.TAGGED);
+	private static final String TAG_SEPARATOR = ";";
+
+	/**
+	 * The supported input formats
+	 */
+	public enum Format {
+		JSON, CSV;
+
+		JsonParser createParser(final Reader reader) throws IOException {
+			switch (this) {
+			case JSON:
+				return new JsonFactory().createParser(reader);
+			case CSV:
+				CsvParser parser = new CsvFactory().createParser(reader);
+				parser.setSchema(CsvSchema.emptySchema().withHeader());
+				return parser;
+			default:
+				throw new IllegalArgumentException("format={" + this + "} is not supported");
+			}
+		}
+	}
+
+	private final GraphDatabaseService graphDb;
+	private final int chunkSize;
+
+	/**
+	 * Creates an importer writing into a running database, the
+	 * {@link PersistenceListener}s of its gateways are notified per chunk
+	 *
+	 * @param graphDb
+	 *            the database (MANDATORY)
+	 * @param chunkSize
+	 *            the number of links written per transaction
+	 */
+	public BulkImporter(final GraphDatabaseService graphDb, final int chunkSize) {
+		Validate.notNull(graphDb);
+		Validate.isTrue(chunkSize > 0, "the chunk size must be positive");
+		this.graphDb = graphDb;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Imports all links of the input into the running database<br>
+	 * The chunks written before a failure stay in the database.
+	 *
+	 * @param input
+	 *            the input, not closed (MANDATORY)
+	 * @param format
+	 *            the format of the input (MANDATORY)
+	 * @return what was imported and how fast
+	 * @throws IOException
+	 *             if the input cannot be read or parsed
+	 */
+	public Statistics importLinks(final Reader input, final Format format) throws IOException {
+		try (OnlineTarget target = new OnlineTarget()) {
+			return run(input, format, target, this.chunkSize);
+		}
+	}
+
+	/**
+	 * Imports all links of the input directly into the store files, for the
+	 * initial load of an empty store<br>
+	 * No database may run on the store meanwhile. Tags are not looked up in
+	 * the store, so importing into a store with tags duplicates them. The
+	 * gateway creates the indexes and constraints on the next start.
+	 *
+	 * @param storeDirectory
+	 *            the store directory of the database (MANDATORY)
+	 * @param input
+	 *            the input, not closed (MANDATORY)
+	 * @param format
+	 *            the format of the input (MANDATORY)
+	 * @return what was imported and how fast
+	 * @throws IOException
+	 *             if the input cannot be read or parsed
+	 */
+	public static Statistics importLinksOffline(final String storeDirectory, final Reader input, final Format format)
+			throws IOException {
+		Validate.notBlank(storeDirectory);
+		try (OfflineTarget target = new OfflineTarget(BatchInserters.inserter(storeDirectory))) {
+			return run(input, format, target, DEFAULT_CHUNK_SIZE);
+		}
+	}
+
+	/**
+	 * Imports a file offline into the store directory of the
+	 * {@link DatabaseFactory}, while the application is stopped<br>
+	 * Usage: <code>BulkImporter &lt;json|csv&gt; &lt;file&gt;</code>
+	 *
+	 * @param args
+	 *            the format and the file
+	 * @throws IOException
+	 *             if the file cannot be read or parsed
+	 */
+	public static void main(final String[] args) throws IOException {
+		// no container injects the logger here
+		if (PersistenceGatewayImpl.LOGGER == null) {
+			PersistenceGatewayImpl.LOGGER = LogManager.getLogger(PersistenceGatewayImpl.class);
+		}
+		if (args.length != 2) {
+			PersistenceGatewayImpl.LOGGER.error("Usage: BulkImporter <json|csv> <file>");
+			System.exit(1);
+		}
+		Format format = Format.valueOf(args[0].toUpperCase(Locale.ENGLISH));
+		try (Reader input = new InputStreamReader(new FileInputStream(args[1]), StandardCharsets.UTF_8)) {
+			importLinksOffline(DatabaseFactory.getStoreDirectory(), input, format);
+		}
+	}
+
+	private static Statistics run(final Reader input, final Format format, final ImportTarget target,
+			final int chunkSize) throws IOException {
+		Validate.notNull(input);
+		Validate.notNull(format);
+
+		Statistics statistics = new Statistics();
+		try (JsonParser parser = format.createParser(input)) {
+			// the input belongs to the caller
+			parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+			int inChunk = 0;
+			ImportRecord record;
+			while ((record = nextRecord(parser)) != null) {
+				if (record.tag) {
+					if (StringUtils.isBlank(record.name) || StringUtils.isBlank(record.uuid)
+							|| !target.createTag(record)) {
+						statistics.skipped++;
+					}
+					continue;
+				}
+				if (StringUtils.isBlank(record.name) || StringUtils.isBlank(record.url)) {
+					statistics.skipped++;
+					continue;
+				}
+
+				long linkId = target.createLink(record);
+				if (linkId < 0) {
+					statistics.skipped++;
+					continue;
+				}
+				if (record.tagUUIDs.isEmpty()) {
+					for (String tagName : record.tags) {
+						target.tag(linkId, tagName);
+						statistics.taggings++;
+					}
+				} else {
+					for (String tagUUID : record.tagUUIDs) {
+						if (target.tagByUUID(linkId, tagUUID)) {
+							statistics.taggings++;
+						} else {
+							PersistenceGatewayImpl.LOGGER.warn("Link {} references the unknown tag {}",
+									new Object[] { record.uuid, tagUUID });
+						}
+					}
+				}
+				statistics.links++;
+
+				if (++inChunk >= chunkSize) {
+					target.commitChunk();
+					inChunk = 0;
+					PersistenceGatewayImpl.LOGGER.info("Imported {} links, {} links/s",
+							new Object[] { statistics.links, statistics.getLinksPerSecond() });
+				}
+			}
+			target.commitChunk();
+		}
+		statistics.tags = target.getCreatedTags();
+		statistics.finish();
+		PersistenceGatewayImpl.LOGGER.info("Finished import: {}", new Object[] { statistics });
+		return statistics;
+	}
+
+	/**
+	 * Reads the next link object from the token stream
+	 *
+	 * @return the link, <code>null</code> at the end of the input
+	 */
+	private static ImportRecord nextRecord(final JsonParser parser) throws IOException {
+		JsonToken token = parser.nextToken();
+		// JSON links may be wrapped in an array
+		while (token == JsonToken.START_ARRAY || token == JsonToken.END_ARRAY) {
+			token = parser.nextToken();
+		}
+		if (token == null) {
+			return null;
+		}
+		if (token != JsonToken.START_OBJECT) {
+			throw new IOException("expected a link object at " + parser.getCurrentLocation() + " but was " + token);
+		}
+
+		ImportRecord record = new ImportRecord();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			switch (field) {
+			case BulkExporter.TYPE:
+				record.tag = BulkExporter.TYPE_TAG.equals(parser.getValueAsString());
+				break;
+			case Link.UUID:
+				record.uuid = StringUtils.trimToNull(parser.getValueAsString());
+				break;
+			case Tag.DESCRIPTION:
+				record.description = StringUtils.defaultString(parser.getValueAsString());
+				break;
+			case Link.CLICK_COUNT:
+				record.clicks = parser.getValueAsInt();
+				break;
+			case Link.SCORE:
+				record.score = parser.getValueAsDouble();
+				break;
+			case Link.HOURLY_CLICKS:
+				record.hourlyClicks = readInts(parser, value);
+				break;
+			case Link.DAILY_CLICKS:
+				record.dailyClicks = readInts(parser, value);
+				break;
+			case Link.NEWEST_CLICK_HOUR:
+				record.newestClickHour = parser.getValueAsLong();
+				break;
+			case Link.HOTNESS:
+				record.hotness = parser.getValueAsDouble();
+				break;
+			case Link.HOTNESS_UPDATED:
+				record.hotnessUpdated = parser.getValueAsLong();
+				break;
+			case BulkExporter.TAG_UUIDS:
+				if (value == JsonToken.START_ARRAY) {
+					while (parser.nextToken() != JsonToken.END_ARRAY) {
+						addTagName(record.tagUUIDs, parser.getValueAsString());
+					}
+				}
+				break;
+			case Link.NAME:
+				record.name = StringUtils.trim(parser.getValueAsString());
+				break;
+			case Link.URL:
+				record.url = StringUtils.trim(parser.getValueAsString());
+				break;
+			case Link.TITLE:
+				record.title = StringUtils.defaultString(parser.getValueAsString());
+				break;
+			case "tags":
+				if (value == JsonToken.START_ARRAY) {
+					while (parser.nextToken() != JsonToken.END_ARRAY) {
+						addTagName(record.tags, parser.getValueAsString());
+					}
+				} else {
+					for (String tagName : StringUtils.split(StringUtils.defaultString(parser.getValueAsString()),
+							TAG_SEPARATOR)) {
+						addTagName(record.tags, tagName);
+					}
+				}
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+		return record;
+	}
+
+	private static int[] readInts(final JsonParser parser, final JsonToken value) throws IOException {
+		if (value != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return null;
+		}
+		List<Integer> values = new ArrayList<Integer>();
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			values.add(parser.getValueAsInt());
+		}
+		int[] ints = new int[values.size()];
+		for (int i = 0; i < ints.length; i++) {
+			ints[i] = values.get(i);
+		}
+		return ints;
+	}
+
+	private static void addTagName(final List<String> tagNames, final String tagName) {
+		String trimmed = StringUtils.trim(tagName);
+		if (StringUtils.isNotEmpty(trimmed) && !tagNames.contains(trimmed)) {
+			tagNames.add(trimmed);
+		}
+	}
+
+	/**
+	 * A link or a tag of the input
+	 */
+	private static final class ImportRecord {
+		/** A tag record of an export instead of a link */
+		boolean tag;
+		/** The uuid of an export, a new one is created without */
+		String uuid;
+		String name;
+		String url;
+		String title = "";
+		String description = "";
+		int clicks;
+		double score;
+		int[] hourlyClicks;
+		int[] dailyClicks;
+		Long newestClickHour;
+		double hotness;
+		long hotnessUpdated;
+		final List<String> tags = new ArrayList<String>();
+		final List<String> tagUUIDs = new ArrayList<String>();
+
+		/**
+		 * @return the properties of a new link node
+		 */
+		Map<String, Object> linkProperties() {
+			Map<String, Object> properties = new HashMap<String, Object>();
+			properties.put(Link.NAME, this.name);
+			properties.put(Link.URL, this.url);
+			properties.put(Link.TITLE, this.title);
+			properties.put(Link.CLICK_COUNT, this.clicks);
+			properties.put(Link.SCORE, this.score);
+			properties.put(Link.UUID, this.uuid == null ? UUID.randomUUID().toString() : this.uuid);
+			if (this.newestClickHour != null && this.hourlyClicks != null && this.dailyClicks != null) {
+				properties.put(Link.HOURLY_CLICKS, this.hourlyClicks);
+				properties.put(Link.DAILY_CLICKS, this.dailyClicks);
+				properties.put(Link.NEWEST_CLICK_HOUR, this.newestClickHour);
+				properties.put(Link.HOTNESS, this.hotness);
+				properties.put(Link.HOTNESS_UPDATED, this.hotnessUpdated);
+			}
+			return properties;
+		}
+
+		/**
+		 * @return the properties of a new tag node
+		 */
+		Map<String, Object> tagProperties() {
+			return tagProperties(this.uuid, this.name, this.description, this.clicks);
+		}
+
+		static Map<String, Object> tagProperties(final String uuid, final String name, final String description,
+				final int clicks) {
+			Map<String, Object> properties = new HashMap<String, Object>();
+			properties.put(Tag.UUID, uuid);
+			properties.put(Tag.NAME, name);
+			properties.put(Tag.DESCRIPTION, description);
+			properties.put(Tag.CLICK_COUNT, clicks);
+			return properties;
+		}
+	}
+
+	/**
+	 * Where the links are written to
+	 */
+	private interface ImportTarget extends AutoCloseable {
+
+		/**
+		 * @return the node id of the new link, -1 if a link with the uuid of
+		 *         the record exists
+		 */
+		long createLink(ImportRecord record);
+
+		/**
+		 * Creates a tag of an export
+		 *
+		 * @return <code>false</code> if a tag with the uuid of the record
+		 *         exists
+		 */
+		boolean createTag(ImportRecord record);
+
+		/**
+		 * Tags the link, creates the tag on first use
+		 */
+		void tag(long linkId, String tagName);
+
+		/**
+		 * Tags the link with a tag of the store or of the import
+		 *
+		 * @return <code>false</code> if the tag does not exist
+		 */
+		boolean tagByUUID(long linkId, String tagUUID);
+
+		void commitChunk();
+
+		int getCreatedTags();
+
+		@Override
+		void close();
+	}
+
+	/**
+	 * Writes in transactions into a running database
+	 */
+	private final class OnlineTarget implements ImportTarget {
+
+		private final Map<String, Node> tagsByName = new HashMap<String, Node>();
+		private final Map<String, Node> tagsByUUID = new HashMap<String, Node>();
+		private final List<String> chunkLinks = new ArrayList<String>();
+		private final List<String> chunkTags = new ArrayList<String>();
+		private Transaction tx = BulkImporter.this.graphDb.beginTx();
+		private int createdTags = 0;
+
+		@Override
+		public long createLink(final ImportRecord record) {
+			if (record.uuid != null && find(Link.LABEL, Link.UUID, record.uuid) != null) {
+				return -1;
+			}
+			Node node = createNode(Link.LABEL, record.linkProperties());
+			this.chunkLinks.add(String.valueOf(node.getProperty(Link.UUID)));
+			return node.getId();
+		}
+
+		@Override
+		public boolean createTag(final ImportRecord record) {
+			if (tagByUUID(record.uuid) != null) {
+				return false;
+			}
+			Node node = createNode(Tag.LABEL, record.tagProperties());
+			this.tagsByUUID.put(record.uuid, node);
+			this.chunkTags.add(record.uuid);
+			this.createdTags++;
+			return true;
+		}
+
+		@Override
+		public boolean tagByUUID(final long linkId, final String tagUUID) {
+			Node tag = tagByUUID(tagUUID);
+			if (tag == null) {
+				return false;
+			}
+			tag.createRelationshipTo(BulkImporter.this.graphDb.getNodeById(linkId), TAGGED_RELATIONSHIP);
+			return true;
+		}
+
+		private Node tagByUUID(final String tagUUID) {
+			Node tag = this.tagsByUUID.get(tagUUID);
+			if (tag == null) {
+				tag = find(Tag.LABEL, Tag.UUID, tagUUID);
+				if (tag != null) {
+					this.tagsByUUID.put(tagUUID, tag);
+				}
+			}
+			return tag;
+		}
+
+		private Node find(final Label label, final String property, final String value) {
+			try (ResourceIterator<Node> nodes = BulkImporter.this.graphDb
+					.findNodesByLabelAndProperty(label, property, value).iterator()) {
+				return nodes.hasNext() ? nodes.next() : null;
+			}
+		}
+
+		private Node createNode(final Label label, final Map<String, Object> properties) {
+			Node node = BulkImporter.this.graphDb.createNode(label);
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				node.setProperty(property.getKey(), property.getValue());
+			}
+			return node;
+		}
+
+		@Override
+		public void tag(final long linkId, final String tagName) {
+			Node tag = this.tagsByName.get(tagName);
+			if (tag == null) {
+				tag = find(Tag.LABEL, Tag.NAME, tagName);
+				if (tag == null) {
+					tag = createTag(tagName);
+				}
+				this.tagsByName.put(tagName, tag);
+			}
+			tag.createRelationshipTo(BulkImporter.this.graphDb.getNodeById(linkId), TAGGED_RELATIONSHIP);
+		}
+
+		private Node createTag(final String tagName) {
+			String uuid = UUID.randomUUID().toString();
+			Node node = createNode(Tag.LABEL, ImportRecord.tagProperties(uuid, tagName, "", 0));
+			this.chunkTags.add(uuid);
+			this.createdTags++;
+			return node;
+		}
+
+		@Override
+		public void commitChunk() {
+			this.tx.success();
+			this.tx.close();
+			this.tx = BulkImporter.this.graphDb.beginTx();
+
+			List<PersistenceListener> listeners = GatewayResources.forDatabase(BulkImporter.this.graphDb).listeners;
+			for (PersistenceListener listener : listeners) {
+				for (String tagUUID : this.chunkTags) {
+					try {
+						listener.tagSaved(tagUUID);
+					} catch (RuntimeException e) {
+						PersistenceGatewayImpl.LOGGER.error("Error notifying " + listener + " about imported tag " + tagUUID, e);
+					}
+				}
+				for (String linkUUID : this.chunkLinks) {
+					try {
+						listener.linkSaved(linkUUID);
+					} catch (RuntimeException e) {
+						PersistenceGatewayImpl.LOGGER.error("Error notifying " + listener + " about imported link " + linkUUID, e);
+					}
+				}
+			}
+			this.chunkTags.clear();
+			this.chunkLinks.clear();
+		}
+
+		@Override
+		public int getCreatedTags() {
+			return this.createdTags;
+		}
+
+		@Override
+		public void close() {
+			// an uncommitted chunk is rolled back
+			this.tx.close();
+		}
+	}
+
+	/**
+	 * Writes directly into the store files, without transactions
+	 */
+	private static final class OfflineTarget implements ImportTarget {
+
+		private final BatchInserter inserter;
+		private final Map<String, Long> tagsByName = new HashMap<String, Long>();
+		private final Map<String, Long> tagsByUUID = new HashMap<String, Long>();
+
+		OfflineTarget(final BatchInserter inserter) {
+			this.inserter = inserter;
+		}
+
+		@Override
+		public long createLink(final ImportRecord record) {
+			// the store is empty, the uuids of the input are unique
+			return this.inserter.createNode(record.linkProperties(), Link.LABEL);
+		}
+
+		@Override
+		public boolean createTag(final ImportRecord record) {
+			if (this.tagsByUUID.containsKey(record.uuid)) {
+				return false;
+			}
+			this.tagsByUUID.put(record.uuid, this.inserter.createNode(record.tagProperties(), Tag.LABEL));
+			return true;
+		}
+
+		@Override
+		public void tag(final long linkId, final String tagName) {
+			Long tagId = this.tagsByName.get(tagName);
+			if (tagId == null) {
+				tagId = this.inserter.createNode(
+						ImportRecord.tagProperties(UUID.randomUUID().toString(), tagName, "", 0), Tag.LABEL);
+				this.tagsByName.put(tagName, tagId);
+			}
+			this.inserter.createRelationship(tagId, linkId, TAGGED_RELATIONSHIP, Collections.<String, Object> emptyMap());
+		}
+
+		@Override
+		public boolean tagByUUID(final long linkId, final String tagUUID) {
+			Long tagId = this.tagsByUUID.get(tagUUID);
+			if (tagId == null) {
+				return false;
+			}
+			this.inserter.createRelationship(tagId, linkId, TAGGED_RELATIONSHIP, Collections.<String, Object> emptyMap());
+			return true;
+		}
+
+		@Override
+		public void commitChunk() {
+			// no transactions, the store is written on close
+		}
+
+		@Override
+		public int getCreatedTags() {
+			return this.tagsByName.size() + this.tagsByUUID.size();
+		}
+
+		@Override
+		public void close() {
+			this.inserter.shutdown();
+		}
+	}
+
+	/**
+	 * What an import wrote and how fast
+	 */
+	public static final class Statistics {
+
+		private final long start = System.nanoTime();
+		private long elapsedNanos = -1;
+		private int links = 0;
+		private int tags = 0;
+		private int taggings = 0;
+		private int skipped = 0;
+
+		/**
+		 * @return the number of imported links
+		 */
+		public int getLinks() {
+			return this.links;
+		}
+
+		/**
+		 * @return the number of created tags
+		 */
+		public int getTags() {
+			return this.tags;
+		}
+
+		/**
+		 * @return the number of created tag edges
+		 */
+		public int getTaggings() {
+			return this.taggings;
+		}
+
+		/**
+		 * @return the number of links skipped for a missing name or url
+		 */
+		public int getSkipped() {
+			return this.skipped;
+		}
+
+		/**
+		 * @return the duration of the import, so far if still running
+		 */
+		public long getElapsedMillis() {
+			long nanos = this.elapsedNanos < 0 ? System.nanoTime() - this.start : this.elapsedNanos;
+			return nanos / 1000000;
+		}
+
+		/**
+		 * @return the throughput of the import
+		 */
+		public long getLinksPerSecond() {
+			return this.links * 1000L / Math.max(1, getElapsedMillis());
+		}
+
+		void finish() {
+			this.elapsedNanos = System.nanoTime() - this.start;
+		}
+
+		@Override
+		public String toString() {
+			return "links=" + this.links + ", tags=" + this.tags + ", taggings=" + this.taggings + ", skipped="
+					+ this.skipped + ", elapsedMillis=" + getElapsedMillis() + ", linksPerSecond="
+					+ getLinksPerSecond();
+		}
+	}
+}
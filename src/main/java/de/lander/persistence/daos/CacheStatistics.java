@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+/**
+ * Snapshot of the statistics of a cache of the persistence gateway
+ *
+ * @author mvogel
+ *
+ */
+public final class CacheStatistics {
+
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+
+	/**
+	 * @param hits
+	 *            the number of lookups answered by the cache
+	 * @param misses
+	 *            the number of lookups which had to be loaded
+	 * @param evictions
+	 *            the number of entries evicted because the cache was full
+	 * @param size
+	 *            the current number of entries
+	 */
+	public CacheStatistics(final long hits, final long misses, final long evictions, final int size) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of lookups answered by the cache
+	 */
+	public long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of lookups which had to be loaded
+	 */
+	public long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full
+	 */
+	public long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * @return the current number of entries
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the share of the lookups answered by the cache, 0 without
+	 *         lookups
+	 */
+	public double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0 : (double) this.hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStatistics [hits=" + this.hits + ", misses=" + this.misses + ", evictions=" + this.evictions
+				+ ", size=" + this.size + "]";
+	}
+}
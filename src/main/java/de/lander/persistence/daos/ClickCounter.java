@@ -0,0 +1,216 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Counts link and tag clicks in memory and writes them to the database in
+ * periodic batches<br>
+ * Counting a click never waits for a transaction, only for a concurrent
+ * click of the same link or tag, a flush writes the clicks counted since the
+ * previous flush in a single transaction. The counters are taken out of the
+ * maps by the flush, so links and tags not clicked again take no memory. Clicks
+ * are lost if the process dies between two flushes, so the flush interval
+ * bounds the loss window. A regular shutdown of the database flushes. The
+ * flushed clicks of a link are also added to its {@link ClickHistory}. The
+ * listeners are notified with {@link PersistenceListener#linkClicked(String)}
+ * and {@link PersistenceListener#tagClicked(String)}, not as saves, so
+ * caches of names and tags survive the flushes.
+ *
+ * @author mvogel
+ *
+ */
+final class ClickCounter {
+
+	/**
+	 * System property for the seconds between two flushes
+	 */
+	static final String FLUSH_INTERVAL_PROPERTY = "linklander.clicks.flushIntervalSeconds";
+
+	private static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 5;
+
+	private final GraphDatabaseService graphDb;
+	private final List<PersistenceListener> listeners;
+	private final ScheduledExecutorService flusher;
+
+	/** Unflushed clicks by link uuid */
+	private final ConcurrentMap<String, Long> linkClicks = new ConcurrentHashMap<String, Long>();
+	/** Unflushed clicks by tag uuid */
+	private final ConcurrentMap<String, Long> tagClicks = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Creates a counter flushing every {@link #FLUSH_INTERVAL_PROPERTY}
+	 * seconds
+	 *
+	 * @param graphDb
+	 *            the database to write the clicks to
+	 * @param listeners
+	 *            the listeners notified about the links and tags with flushed
+	 *            clicks
+	 */
+	ClickCounter(final GraphDatabaseService graphDb, final List<PersistenceListener> listeners) {
+		this.graphDb = graphDb;
+		this.listeners = listeners;
+
+		long flushIntervalSeconds = Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_SECONDS);
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "linklander-click-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds,
+				TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param linkUUID
+	 *            the uuid of the clicked link
+	 */
+	void incrementLink(final String linkUUID) {
+		this.linkClicks.merge(linkUUID, 1L, Long::sum);
+	}
+
+	/**
+	 * @param tagUUID
+	 *            the uuid of the clicked tag
+	 */
+	void incrementTag(final String tagUUID) {
+		this.tagClicks.merge(tagUUID, 1L, Long::sum);
+	}
+
+	/**
+	 * Writes the clicks counted since the last flush in one transaction<br>
+	 * Clicks of links and tags deleted meanwhile are dropped, on failure the
+	 * clicks are kept for the next flush.
+	 */
+	synchronized void flush() {
+		Map<String, Long> links = drain(this.linkClicks);
+		Map<String, Long> tags = drain(this.tagClicks);
+		if (links.isEmpty() && tags.isEmpty()) {
+			return;
+		}
+
+		try (Transaction tx = this.graphDb.beginTx()) {
+			Map<String, Node> clickedLinks = addClicks(Link.LABEL, Link.UUID, Link.CLICK_COUNT, links);
+			long now = System.currentTimeMillis();
+			for (Entry<String, Node> link : clickedLinks.entrySet()) {
+				ClickHistory.record(link.getValue(), links.get(link.getKey()), now);
+			}
+			links.keySet().retainAll(clickedLinks.keySet());
+			tags.keySet().retainAll(addClicks(Tag.LABEL, Tag.UUID, Tag.CLICK_COUNT, tags).keySet());
+			tx.success();
+		} catch (RuntimeException e) {
+			restore(links, this.linkClicks);
+			restore(tags, this.tagClicks);
+			throw e;
+		}
+
+		PersistenceGatewayImpl.LOGGER.debug("Flushed clicks of {} links and {} tags",
+				new Object[] { links.size(), tags.size() });
+		for (String linkUUID : links.keySet()) {
+			for (PersistenceListener listener : this.listeners) {
+				try {
+					listener.linkClicked(linkUUID);
+				} catch (RuntimeException e) {
+					PersistenceGatewayImpl.LOGGER.error("Error notifying " + listener + " about clicked link " + linkUUID, e);
+				}
+			}
+		}
+		for (String tagUUID : tags.keySet()) {
+			for (PersistenceListener listener : this.listeners) {
+				try {
+					listener.tagClicked(tagUUID);
+				} catch (RuntimeException e) {
+					PersistenceGatewayImpl.LOGGER.error("Error notifying " + listener + " about clicked tag " + tagUUID, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the periodic flushes and flushes the remaining clicks, while the
+	 * database is still available
+	 */
+	void close() {
+		this.flusher.shutdown();
+		try {
+			this.flusher.awaitTermination(DEFAULT_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			// keep the schedule alive, the clicks are retried with the next flush
+			PersistenceGatewayImpl.LOGGER.error("Error flushing clicks", e);
+		}
+	}
+
+	/**
+	 * Adds the clicks to the click count property of the nodes found by the
+	 * key property
+	 *
+	 * @return the updated nodes by key
+	 */
+	private Map<String, Node> addClicks(final Label label, final String keyProperty, final String clickProperty,
+			final Map<String, Long> clicks) {
+		Map<String, Node> updated = new HashMap<String, Node>();
+		for (Entry<String, Long> entry : clicks.entrySet()) {
+			try (ResourceIterator<Node> nodes = this.graphDb
+					.findNodesByLabelAndProperty(label, keyProperty, entry.getKey()).iterator()) {
+				if (nodes.hasNext()) {
+					Node node = nodes.next();
+					long clickCount = Long.parseLong(String.valueOf(node.getProperty(clickProperty, 0)))
+							+ entry.getValue();
+					node.setProperty(clickProperty, (int) Math.min(clickCount, Integer.MAX_VALUE));
+					updated.put(entry.getKey(), node);
+				}
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * Takes the counted clicks out of the counters, a click counted meanwhile
+	 * starts a new counter for the next flush
+	 */
+	private static Map<String, Long> drain(final ConcurrentMap<String, Long> counters) {
+		Map<String, Long> clicks = new HashMap<String, Long>();
+		for (String key : counters.keySet()) {
+			Long count = counters.remove(key);
+			if (count != null) {
+				clicks.put(key, count);
+			}
+		}
+		return clicks;
+	}
+
+	private static void restore(final Map<String, Long> clicks, final ConcurrentMap<String, Long> counters) {
+		for (Entry<String, Long> entry : clicks.entrySet()) {
+			counters.merge(entry.getKey(), entry.getValue(), Long::sum);
+		}
+	}
+}
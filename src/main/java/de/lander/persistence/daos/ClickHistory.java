@@ -0,0 +1,167 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Node;
+
+import de.lander.persistence.entities.Link;
+
+/**
+ * The recent clicks of a link in hourly and daily buckets, and its decayed
+ * hotness<br>
+ * The buckets are ring buffers indexed by the hour or day since the epoch, so
+ * recording a click touches one bucket per ring plus the buckets skipped
+ * since the previous click, and never moves the history. The hotness is
+ * decayed and incremented on every record, reading it costs a single
+ * multiplication, see {@link Link#getHotness(long)}. The history is stored in
+ * array properties of the link node.
+ *
+ * @author mvogel
+ *
+ */
+public final class ClickHistory {
+
+	/**
+	 * The number of hourly buckets
+	 */
+	public static final int HOURS = 48;
+
+	/**
+	 * The number of daily buckets
+	 */
+	public static final int DAYS = 30;
+
+	private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final int HOURS_PER_DAY = 24;
+
+	private final int[] hourlyClicks;
+	private final int[] dailyClicks;
+	/** The hour since the epoch of the newest bucket, -1 without clicks */
+	private long newestHour;
+	private double hotness;
+	private long hotnessUpdated;
+
+	private ClickHistory(final int[] hourlyClicks, final int[] dailyClicks, final long newestHour,
+			final double hotness, final long hotnessUpdated) {
+		this.hourlyClicks = hourlyClicks;
+		this.dailyClicks = dailyClicks;
+		this.newestHour = newestHour;
+		this.hotness = hotness;
+		this.hotnessUpdated = hotnessUpdated;
+	}
+
+	/**
+	 * Reads the history of a link node, needs a transaction
+	 *
+	 * @param link
+	 *            the link node
+	 * @return the history, empty if the link was never clicked
+	 */
+	static ClickHistory read(final Node link) {
+		int[] hourlyClicks = (int[]) link.getProperty(Link.HOURLY_CLICKS, null);
+		int[] dailyClicks = (int[]) link.getProperty(Link.DAILY_CLICKS, null);
+		if (hourlyClicks == null || dailyClicks == null || hourlyClicks.length != HOURS
+				|| dailyClicks.length != DAYS) {
+			return new ClickHistory(new int[HOURS], new int[DAYS], -1, 0, 0);
+		}
+		return new ClickHistory(hourlyClicks, dailyClicks, (Long) link.getProperty(Link.NEWEST_CLICK_HOUR),
+				(Double) link.getProperty(Link.HOTNESS, 0.0), (Long) link.getProperty(Link.HOTNESS_UPDATED, 0L));
+	}
+
+	/**
+	 * Adds clicks to the history of a link node, needs a transaction
+	 *
+	 * @param link
+	 *            the link node
+	 * @param clicks
+	 *            the number of clicks
+	 * @param nowMillis
+	 *            the time of the clicks
+	 */
+	static void record(final Node link, final long clicks, final long nowMillis) {
+		ClickHistory history = read(link);
+		history.record(clicks, nowMillis);
+
+		link.setProperty(Link.HOURLY_CLICKS, history.hourlyClicks);
+		link.setProperty(Link.DAILY_CLICKS, history.dailyClicks);
+		link.setProperty(Link.NEWEST_CLICK_HOUR, history.newestHour);
+		link.setProperty(Link.HOTNESS, history.hotness);
+		link.setProperty(Link.HOTNESS_UPDATED, history.hotnessUpdated);
+	}
+
+	private void record(final long clicks, final long nowMillis) {
+		long hour = nowMillis / HOUR_MILLIS;
+		if (hour > newestHour) {
+			clearSkipped(hourlyClicks, newestHour, hour);
+			clearSkipped(dailyClicks, newestHour < 0 ? -1 : newestHour / HOURS_PER_DAY, hour / HOURS_PER_DAY);
+			newestHour = hour;
+		}
+		// clicks of a past hour, e.g. with a clock set back, count for the
+		// newest bucket
+		add(hourlyClicks, (int) (newestHour % HOURS), clicks);
+		add(dailyClicks, (int) ((newestHour / HOURS_PER_DAY) % DAYS), clicks);
+
+		long updated = Math.max(nowMillis, hotnessUpdated);
+		hotness = Link.decayHotness(hotness, hotnessUpdated, updated) + clicks;
+		hotnessUpdated = updated;
+	}
+
+	/**
+	 * Clears the buckets after the newest one up to the current one, at most
+	 * once around the ring
+	 */
+	private static void clearSkipped(final int[] ring, final long newest, final long current) {
+		long first = Math.max(newest + 1, current - ring.length + 1);
+		for (long bucket = first; bucket <= current; bucket++) {
+			ring[(int) (bucket % ring.length)] = 0;
+		}
+	}
+
+	private static void add(final int[] ring, final int bucket, final long clicks) {
+		ring[bucket] = (int) Math.min((long) ring[bucket] + clicks, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param nowMillis
+	 *            the current time
+	 * @return the clicks of the last {@link #HOURS} hours, oldest first, the
+	 *         current hour last
+	 */
+	public int[] getHourlyClicks(final long nowMillis) {
+		return window(hourlyClicks, newestHour, nowMillis / HOUR_MILLIS);
+	}
+
+	/**
+	 * @param nowMillis
+	 *            the current time
+	 * @return the clicks of the last {@link #DAYS} days, oldest first, the
+	 *         current day last
+	 */
+	public int[] getDailyClicks(final long nowMillis) {
+		return window(dailyClicks, newestHour < 0 ? -1 : newestHour / HOURS_PER_DAY,
+				nowMillis / HOUR_MILLIS / HOURS_PER_DAY);
+	}
+
+	/**
+	 * @param nowMillis
+	 *            the current time
+	 * @return the hotness at the given time
+	 */
+	public double getHotness(final long nowMillis) {
+		return Link.decayHotness(hotness, hotnessUpdated, nowMillis);
+	}
+
+	private static int[] window(final int[] ring, final long newest, final long current) {
+		int[] window = new int[ring.length];
+		for (int i = 0; i < ring.length; i++) {
+			long bucket = current - ring.length + 1 + i;
+			if (newest >= 0 && bucket <= newest && bucket > newest - ring.length) {
+				window[i] = ring[(int) (bucket % ring.length)];
+			}
+		}
+		return window;
+	}
+}
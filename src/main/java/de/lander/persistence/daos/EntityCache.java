@@ -0,0 +1,183 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.Validate;
+
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Bounded read-through cache of the immutable {@link Link} and {@link Tag}
+ * objects by uuid<br>
+ * The least recently used entry is evicted once the capacity is reached. As a
+ * {@link PersistenceListener} the cache drops every link and tag after it was
+ * saved, deleted or clicked, so all writes through a gateway, a batch, the
+ * click flush or the bulk import invalidate it.
+ *
+ * @author mvogel
+ *
+ */
+final class EntityCache implements PersistenceListener {
+
+	/**
+	 * System property for the maximum number of cached links and of cached
+	 * tags
+	 */
+	static final String MAX_SIZE_PROPERTY = "linklander.entityCache.maxSize";
+
+	private static final int DEFAULT_MAX_SIZE = 10000;
+
+	private final Region<Link> links;
+	private final Region<Tag> tags;
+
+	/**
+	 * Creates an empty cache holding at most {@link #MAX_SIZE_PROPERTY} links
+	 * and tags each
+	 */
+	EntityCache() {
+		this(Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+	}
+
+	/**
+	 * Creates an empty cache
+	 *
+	 * @param capacity
+	 *            the maximum number of cached links and of cached tags
+	 */
+	EntityCache(final int capacity) {
+		Validate.isTrue(capacity > 0, "the capacity must be positive");
+		this.links = new Region<Link>(capacity);
+		this.tags = new Region<Tag>(capacity);
+	}
+
+	/**
+	 * @param uuid
+	 *            the uuid of the link
+	 * @param loader
+	 *            loads the link on a cache miss
+	 * @return the cached or loaded link
+	 */
+	Link getLink(final String uuid, final Supplier<Link> loader) {
+		return this.links.get(uuid, loader);
+	}
+
+	/**
+	 * @param uuid
+	 *            the uuid of the tag
+	 * @param loader
+	 *            loads the tag on a cache miss
+	 * @return the cached or loaded tag
+	 */
+	Tag getTag(final String uuid, final Supplier<Tag> loader) {
+		return this.tags.get(uuid, loader);
+	}
+
+	/**
+	 * @return the statistics of the links and tags together
+	 */
+	CacheStatistics getStatistics() {
+		return new CacheStatistics(this.links.hits.sum() + this.tags.hits.sum(),
+				this.links.misses.sum() + this.tags.misses.sum(),
+				this.links.evictions.sum() + this.tags.evictions.sum(), this.links.size() + this.tags.size());
+	}
+
+	@Override
+	public void linkSaved(final String linkUUID) {
+		this.links.invalidate(linkUUID);
+	}
+
+	@Override
+	public void linkDeleted(final String linkUUID) {
+		this.links.invalidate(linkUUID);
+	}
+
+	@Override
+	public void tagSaved(final String tagUUID) {
+		this.tags.invalidate(tagUUID);
+	}
+
+	@Override
+	public void tagDeleted(final String tagUUID) {
+		this.tags.invalidate(tagUUID);
+	}
+
+	@Override
+	public void linkClicked(final String linkUUID) {
+		this.links.invalidate(linkUUID);
+	}
+
+	@Override
+	public void tagClicked(final String tagUUID) {
+		this.tags.invalidate(tagUUID);
+	}
+
+	/**
+	 * The cached objects of one entity type
+	 */
+	private static final class Region<V> {
+
+		private final Map<String, V> entries;
+		/**
+		 * Incremented by every invalidation, a value loaded while an
+		 * invalidation happened may be stale and is not cached
+		 */
+		private long generation = 0;
+
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder evictions = new LongAdder();
+
+		Region(final int capacity) {
+			this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+				private static final long serialVersionUID = -2208634521077905562L;
+
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+					if (size() > capacity) {
+						Region.this.evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		V get(final String uuid, final Supplier<V> loader) {
+			long loadedInGeneration;
+			synchronized (this) {
+				V cached = this.entries.get(uuid);
+				if (cached != null) {
+					this.hits.increment();
+					return cached;
+				}
+				loadedInGeneration = this.generation;
+			}
+
+			this.misses.increment();
+			// loaded outside of the lock, the loader reads the database
+			V loaded = loader.get();
+			synchronized (this) {
+				if (this.generation == loadedInGeneration) {
+					this.entries.put(uuid, loaded);
+				}
+			}
+			return loaded;
+		}
+
+		synchronized void invalidate(final String uuid) {
+			this.generation++;
+			this.entries.remove(uuid);
+		}
+
+		synchronized int size() {
+			return this.entries.size();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.Validate;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.event.ErrorState;
+import org.neo4j.graphdb.event.KernelEventHandler;
+
+/**
+ * Holds the state shared by all {@link PersistenceGatewayImpl}s of the same
+ * database<br>
+ * A gateway is created per injection point, but caches and listeners have to
+ * see the writes of every gateway.
+ *
+ * @author mvogel
+ *
+ */
+final class GatewayResources {
+
+	/**
+	 * One instance per running database, see
+	 * {@link #forDatabase(GraphDatabaseService)}. The resources reference
+	 * their database, so the entry is removed on shutdown.
+	 */
+	private static final Map<GraphDatabaseService, GatewayResources> RESOURCES = new HashMap<>();
+
+	final StatementRegistry statements;
+	final SubstringIndex substrings;
+	final EntityCache entities = new EntityCache();
+	final List<PersistenceListener> listeners = new CopyOnWriteArrayList<PersistenceListener>();
+	final ClickCounter clicks;
+
+	private GatewayResources(final GraphDatabaseService graphDb) {
+		this.statements = new StatementRegistry(graphDb);
+		this.substrings = new SubstringIndex(graphDb);
+		// internal indexes are updated before any other listener is notified
+		this.listeners.add(this.substrings);
+		this.listeners.add(this.entities);
+		this.clicks = new ClickCounter(graphDb, this.listeners);
+	}
+
+	/**
+	 * Returns the resources shared by all gateways of the given database
+	 *
+	 * @param graphDb
+	 *            the database (MANDATORY)
+	 * @return the resources, never <code>null</code>
+	 */
+	static synchronized GatewayResources forDatabase(final GraphDatabaseService graphDb) {
+		Validate.notNull(graphDb);
+
+		GatewayResources resources = RESOURCES.get(graphDb);
+		if (resources == null) {
+			resources = new GatewayResources(graphDb);
+			RESOURCES.put(graphDb, resources);
+			graphDb.registerKernelEventHandler(new ReleaseOnShutdown(graphDb));
+		}
+		return resources;
+	}
+
+	/**
+	 * Flushes the pending clicks and drops the resources of a database when it
+	 * shuts down
+	 */
+	private static final class ReleaseOnShutdown implements KernelEventHandler {
+
+		private final GraphDatabaseService graphDb;
+
+		ReleaseOnShutdown(final GraphDatabaseService graphDb) {
+			this.graphDb = graphDb;
+		}
+
+		@Override
+		public void beforeShutdown() {
+			GatewayResources resources;
+			synchronized (GatewayResources.class) {
+				resources = RESOURCES.remove(this.graphDb);
+			}
+			if (resources != null) {
+				resources.clicks.close();
+			}
+		}
+
+		@Override
+		public void kernelPanic(final ErrorState error) {
+			// nothing to release
+		}
+
+		@Override
+		public Object getResource() {
+			return this.graphDb;
+		}
+
+		@Override
+		public ExecutionOrder orderComparedTo(final KernelEventHandler other) {
+			return ExecutionOrder.DOESNT_MATTER;
+		}
+	}
+}
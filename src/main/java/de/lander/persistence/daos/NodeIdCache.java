@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Bounded cache mapping the uuid of a node to its internal node id<br>
+ * The least recently used entry is evicted once the capacity is reached.
+ * Node ids are reused by neo4j after a deletion, so callers have to verify the
+ * uuid of the node they load by a cached id.
+ *
+ * @author mvogel
+ *
+ */
+final class NodeIdCache {
+
+	private final Map<String, Long> nodeIds;
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param capacity
+	 *            the maximum number of cached ids
+	 */
+	NodeIdCache(final int capacity) {
+		Validate.isTrue(capacity > 0, "the capacity must be positive");
+
+		this.nodeIds = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 4720915483712376110L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param uuid
+	 *            the uuid of the node
+	 * @return the cached node id or <code>null</code> if the uuid is not cached
+	 */
+	synchronized Long get(final String uuid) {
+		return this.nodeIds.get(uuid);
+	}
+
+	/**
+	 * @param uuid
+	 *            the uuid of the node
+	 * @param nodeId
+	 *            the internal id of the node
+	 */
+	synchronized void put(final String uuid, final long nodeId) {
+		this.nodeIds.put(uuid, nodeId);
+	}
+
+	/**
+	 * @param uuid
+	 *            the uuid of the node to forget
+	 */
+	synchronized void remove(final String uuid) {
+		this.nodeIds.remove(uuid);
+	}
+}
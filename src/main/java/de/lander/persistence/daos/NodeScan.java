@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.core.NodeManager;
+
+/**
+ * Walks the node ids upward from a cursor and returns the nodes with one of
+ * the labels, needs a transaction<br>
+ * Neo4j 2.1 can't seek a range of <code>id(node)</code>, so a Cypher query
+ * for the nodes after an id scans the whole label and sorts it, and reading
+ * all nodes in chunks costs quadratic time. Looking up the ids one by one
+ * costs one record read per id, unused ids and nodes of other labels
+ * included, so reading all nodes in chunks stays linear.
+ *
+ * @author mvogel
+ *
+ */
+final class NodeScan {
+
+	private final GraphDatabaseService graphDb;
+	private final Label[] labels;
+	private final long highestId;
+	private long cursor;
+
+	/**
+	 * @param graphDb
+	 *            the database
+	 * @param afterNodeId
+	 *            the id to start after, -1 to start at the first node
+	 * @param labels
+	 *            the labels of the nodes to return
+	 */
+	NodeScan(final GraphDatabaseService graphDb, final long afterNodeId, final Label... labels) {
+		this.graphDb = graphDb;
+		this.labels = labels;
+		this.highestId = ((GraphDatabaseAPI) graphDb).getDependencyResolver().resolveDependency(NodeManager.class)
+				.getHighestPossibleIdInUse(Node.class);
+		this.cursor = afterNodeId;
+	}
+
+	/**
+	 * @return the node with the next higher id and one of the labels,
+	 *         <code>null</code> after the highest id in use
+	 */
+	Node next() {
+		while (this.cursor < this.highestId) {
+			this.cursor++;
+			Node node;
+			try {
+				node = this.graphDb.getNodeById(this.cursor);
+			} catch (NotFoundException e) {
+				// an unused or deleted id
+				continue;
+			}
+			for (Label label : this.labels) {
+				if (node.hasLabel(label)) {
+					return node;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the id of the last node looked at, whether it was returned or
+	 *         not
+	 */
+	long getCursor() {
+		return this.cursor;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of a result ordered by node id, with the cursor of the next page<br>
+ * Cursors are opaque to callers: pass <code>null</code> for the first page and
+ * {@link #getNextCursor()} for every further page.
+ *
+ * @author mvogel
+ *
+ * @param <T>
+ *            the type of the items
+ */
+public final class Page<T> {
+
+	private static final int CURSOR_RADIX = Character.MAX_RADIX;
+
+	private final List<T> items;
+	private final String nextCursor;
+
+	Page(final List<T> items, final String nextCursor) {
+		this.items = Collections.unmodifiableList(items);
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return the items of the page, at most the page size
+	 */
+	public List<T> getItems() {
+		return this.items;
+	}
+
+	/**
+	 * @return the cursor of the next page, <code>null</code> for the last page
+	 */
+	public String getNextCursor() {
+		return this.nextCursor;
+	}
+
+	/**
+	 * @return <code>true</code> if there is a next page
+	 */
+	public boolean hasNext() {
+		return this.nextCursor != null;
+	}
+
+	/**
+	 * @param nodeId
+	 *            the node id of the last item of a page
+	 * @return the cursor of the following page
+	 */
+	static String cursorAfter(final long nodeId) {
+		return Long.toString(nodeId, CURSOR_RADIX);
+	}
+
+	/**
+	 * @param cursor
+	 *            a cursor of {@link #cursorAfter(long)}, <code>null</code> for
+	 *            the first page
+	 * @return the node id after which the page starts, -1 for the first page
+	 * @throws {@link IllegalArgumentException} if the cursor is invalid
+	 */
+	static long nodeIdBefore(final String cursor) {
+		if (cursor == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(cursor, CURSOR_RADIX);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("cursor={" + cursor + "} is invalid");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Page [items=" + this.items.size() + ", nextCursor=" + this.nextCursor + "]";
+	}
+}
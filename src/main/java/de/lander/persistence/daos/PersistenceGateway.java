@@ -3,6 +3,7 @@
  */
 package de.lander.persistence.daos;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -176,6 +177,19 @@ public interface PersistenceGateway {
 	 */
 	List<Link> getAllLinks();
 
+	/**
+	 * Returns a page of all links, ordered by their creation
+	 * 
+	 * @param pageSize
+	 *            the maximum number of links of the page
+	 * @param cursor
+	 *            {@link Page#getNextCursor()} of the previous page,
+	 *            <code>null</code> for the first page
+	 * @return the page, never <code>null</code>
+	 * @throws {@link IllegalArgumentException} if the cursor is invalid
+	 */
+	Page<Link> getAllLinks(int pageSize, String cursor);
+
 	/**
 	 * Retrieves {@link Tag}s with the given property
 	 * 
@@ -186,6 +200,24 @@ public interface PersistenceGateway {
 	 * @return a list of {@link Tag}s
 	 */
 	List<Tag> searchTags(TagProperty property, String propertyValue);
+
+	/**
+	 * Returns a page of the {@link Tag}s with the given property, see
+	 * {@link #searchTags(TagProperty, String)}
+	 * 
+	 * @param property
+	 *            the property (MANDATORY)
+	 * @param propertyValue
+	 *            the value of the property (MANDATORY)
+	 * @param pageSize
+	 *            the maximum number of tags of the page
+	 * @param cursor
+	 *            {@link Page#getNextCursor()} of the previous page,
+	 *            <code>null</code> for the first page
+	 * @return the page, never <code>null</code>
+	 * @throws {@link IllegalArgumentException} if the cursor is invalid
+	 */
+	Page<Tag> searchTags(TagProperty property, String propertyValue, int pageSize, String cursor);
 	
 	/**
 	 * Get all tags that are stored in the DB
@@ -205,11 +237,23 @@ public interface PersistenceGateway {
 	 */
 	List<Tag> getTagsForLink(final String linkUUID);
 
+	/**
+	 * Returns the tags of several links with a single query
+	 * 
+	 * @param linkUUIDs
+	 *            the UUIDs of the links (MANDATORY)
+	 * @return the tags per link UUID. Contains an entry for each given UUID,
+	 *         which is an empty list if the link has no tags or does not exist
+	 */
+	Map<String, List<Tag>> getTagsForLinks(final Collection<String> linkUUIDs);
+
 	// /////////////
 	// CLICKS
 	// /////////////
 	/**
-	 * Increments the link click count
+	 * Increments the link click count<br>
+	 * The click is counted in memory and written with the next periodic flush,
+	 * see {@link #flushClicks()}
 	 * 
 	 * @param linkName
 	 *            the name of the link
@@ -231,7 +275,9 @@ public interface PersistenceGateway {
 	void updateLinkScore(final String linkName, final double newScore);
 
 	/**
-	 * Increments the tag click count
+	 * Increments the tag click count<br>
+	 * The click is counted in memory and written with the next periodic flush,
+	 * see {@link #flushClicks()}
 	 * 
 	 * @param tagName
 	 *            the name of the tag
@@ -240,6 +286,37 @@ public interface PersistenceGateway {
 	 */
 	void incrementTagClick(final String tagName);
 
+	/**
+	 * Writes the counted link and tag clicks to the database now instead of
+	 * with the next periodic flush
+	 */
+	void flushClicks();
+
+	/**
+	 * Returns the recent clicks of a link in hourly and daily buckets, with
+	 * its decayed hotness. Contains the flushed clicks only, see
+	 * {@link #flushClicks()}
+	 * 
+	 * @param linkUUID
+	 *            the uuid of the link (MANDATORY)
+	 * @return the history or <code>null</code> if there is no such link
+	 */
+	ClickHistory getClickHistory(String linkUUID);
+
+	// /////////////
+	// CACHES
+	// /////////////
+	/**
+	 * Returns the statistics of the cache of the {@link Link} and {@link Tag}
+	 * objects<br>
+	 * Found links and tags are cached by uuid until they are saved or deleted,
+	 * the maximum number of cached links and tags is set by the system property
+	 * <code>linklander.entityCache.maxSize</code>.
+	 * 
+	 * @return the statistics of the links and tags together
+	 */
+	CacheStatistics getEntityCacheStatistics();
+
 	/**
 	 * Return a single link by the unique link uuid
 	 * 
@@ -249,6 +326,15 @@ public interface PersistenceGateway {
 	 */
 	Link getLinkByUUID(String uuid);
 
+	/**
+	 * Return a single tag by the unique tag uuid
+	 * 
+	 * @param uuid
+	 *            the uuid identifying the tag
+	 * @return the tag object, or null if no tag was found
+	 */
+	Tag getTagByUUID(String uuid);
+
 	/**
 	 * Set a single property of the link identified by the given UUID
 	 * 
@@ -270,4 +356,50 @@ public interface PersistenceGateway {
 	//TODO: Write JDOC
 	List<Link> searchLinks(String value);
 
+	/**
+	 * Returns a page of the links whose name or url contains the value, see
+	 * {@link #searchLinks(String)}
+	 * 
+	 * @param value
+	 *            the value to search for (MANDATORY)
+	 * @param pageSize
+	 *            the maximum number of links of the page
+	 * @param cursor
+	 *            {@link Page#getNextCursor()} of the previous page,
+	 *            <code>null</code> for the first page
+	 * @return the page, never <code>null</code>
+	 * @throws {@link IllegalArgumentException} if the cursor is invalid
+	 */
+	Page<Link> searchLinks(String value, int pageSize, String cursor);
+
+	// /////////////
+	// BATCH
+	// /////////////
+	/**
+	 * Starts a unit of work, which writes several changes in one transaction
+	 * 
+	 * @return a new {@link Batch}, written by {@link Batch#commit()}
+	 */
+	Batch batch();
+
+	// /////////////
+	// LISTENERS
+	// /////////////
+	/**
+	 * Registers a listener for all changes written to the database, by this
+	 * or any other gateway
+	 * 
+	 * @param listener
+	 *            the listener (MANDATORY)
+	 */
+	void addPersistenceListener(PersistenceListener listener);
+
+	/**
+	 * Removes a previously registered listener
+	 * 
+	 * @param listener
+	 *            the listener
+	 */
+	void removePersistenceListener(PersistenceListener listener);
+
 }
@@ -3,33 +3,51 @@
  */
 package de.lander.persistence.daos;
 
+import static de.lander.persistence.daos.StatementRegistry.params;
 import static scala.collection.JavaConversions.asJavaIterator;
 import static scala.collection.JavaConversions.asJavaList;
 import static scala.collection.JavaConversions.asJavaMap;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.logging.log4j.Logger;
-import org.neo4j.cypher.ExecutionEngine;
 import org.neo4j.cypher.ExecutionResult;
 import org.neo4j.graphdb.ConstraintViolationException;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.ResourceIterable;
 import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
-import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.ConstraintType;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+import org.neo4j.graphdb.schema.Schema.IndexState;
 
 import de.lander.persistence.entities.Link;
 import de.lander.persistence.entities.Relationships;
@@ -49,8 +67,53 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 	@Inject
 	public static transient Logger LOGGER;
 
+	/**
+	 * Maximum time to wait for the population of the schema indexes on startup
+	 */
+	private static final long INDEX_ONLINE_TIMEOUT_SECONDS = 300;
+
+	private static final RelationshipType TAGGED_RELATIONSHIP = DynamicRelationshipType.withName(TAGGED);
+
+	/**
+	 * Maximum number of link uuids whose node id is cached
+	 */
+	private static final int LINK_ID_CACHE_SIZE = 10000;
+
+	// /////////////
+	// STATEMENTS
+	// /////////////
+	// NOTE: statements are fixed templates, values are always passed as
+	// parameters. Otherwise the execution engine has to plan every query anew.
+	//@formatter:off
+	private static final String ALL_LINKS = "MATCH (link:" + Link.LABEL + ") RETURN link";
+	private static final String ALL_TAGS = "MATCH (tag:" + Tag.LABEL + ") RETURN tag";
+	private static final String DELETE_LINK_BY_UUID = "MATCH (link:" + Link.LABEL + " {" + Link.UUID + ": {uuid}}) DELETE link";
+	private static final String DELETE_LINK_BY_EXACT_NAME = "MATCH (link:" + Link.LABEL + " {" + Link.NAME + ": {value}})"
+			+ " WITH link, link." + Link.UUID + " AS uuid DELETE link RETURN uuid";
+	private static final String DELETE_LINK_BY_EXACT_URL = "MATCH (link:" + Link.LABEL + " {" + Link.URL + ": {value}})"
+			+ " WITH link, link." + Link.UUID + " AS uuid DELETE link RETURN uuid";
+	private static final String DELETE_LINK_BY_NAME = "MATCH (link:" + Link.LABEL + ") WHERE link." + Link.NAME
+			+ " =~ {value} WITH link, link." + Link.UUID + " AS uuid DELETE link RETURN uuid";
+	private static final String DELETE_LINK_BY_URL = "MATCH (link:" + Link.LABEL + ") WHERE link." + Link.URL
+			+ " =~ {value} WITH link, link." + Link.UUID + " AS uuid DELETE link RETURN uuid";
+	private static final String DELETE_TAG_BY_EXACT_NAME = "MATCH (tag:" + Tag.LABEL + " {" + Tag.NAME + ": {value}})"
+			+ " WITH tag, tag." + Tag.UUID + " AS uuid DELETE tag RETURN uuid";
+	private static final String DELETE_TAG_BY_NAME = "MATCH (tag:" + Tag.LABEL + ") WHERE tag." + Tag.NAME
+			+ " =~ {value} WITH tag, tag." + Tag.UUID + " AS uuid DELETE tag RETURN uuid";
+	private static final String ADD_TAG_TO_LINK = "MATCH (link:" + Link.LABEL + " {" + Link.UUID + ": {linkUUID}}), "
+			+ "(tag:" + Tag.LABEL + " {" + Tag.UUID + ": {tagUUID}}) CREATE (tag)-[:" + TAGGED + "]->(link)";
+	private static final String REMOVE_TAG_FROM_LINK = "MATCH (link:" + Link.LABEL + " {" + Link.UUID + ": {linkUUID}})"
+			+ "<-[t:" + TAGGED + "]-(tag:" + Tag.LABEL + " {" + Tag.UUID + ": {tagUUID}}) DELETE t";
+	private static final String TAGS_FOR_LINK = "MATCH (:" + Link.LABEL + " {" + Link.UUID + ": {uuid}})<-[:" + TAGGED
+			+ "]-(tag:" + Tag.LABEL + ") RETURN tag";
+	private static final String TAGS_FOR_LINKS = "UNWIND {uuids} AS uuid MATCH (:" + Link.LABEL + " {" + Link.UUID + ": uuid})<-[:"
+			+ TAGGED + "]-(tag:" + Tag.LABEL + ") RETURN {uuid: uuid, tags: collect(tag)} AS hits";
+	//@formatter:on
+
 	private final GraphDatabaseService graphDb;
-	private final ExecutionEngine cypher;
+	private final GatewayResources resources;
+	private final StatementRegistry statements;
+	private final NodeIdCache linkIds = new NodeIdCache(LINK_ID_CACHE_SIZE);
 
 	/**
 	 * Creates a new AdminDao
@@ -61,23 +124,107 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 	@Inject
 	public PersistenceGatewayImpl(final GraphDatabaseService graphDb) {
 		this.graphDb = graphDb;
-		this.cypher = new ExecutionEngine(graphDb, StringLogger.DEV_NULL);
-		createIndexesAndConstraints();
+		this.resources = GatewayResources.forDatabase(graphDb);
+		this.statements = this.resources.statements;
 		registerShutdownHook(graphDb);
 	}
 
 	/**
-	 * Creates the desired indexes and constraints
+	 * Creates the desired indexes and constraints and waits until they are
+	 * online, so the gateway never serves requests with label scans
 	 */
-	private void createIndexesAndConstraints() {
+	@PostConstruct
+	void createIndexesAndConstraints() {
 		// NOTE: contraints add also an index
-		// Name, Tag and Link Property should not need to be unique -> try to
-		// find other unique properties
-		// + ") ASSERT link." + Link.NAME + " IS UNIQUE");
-		// this.cypher.execute("CREATE CONSTRAINT ON (link:" + Tag.LABEL
-		// + ") ASSERT link." + Tag.NAME + " IS UNIQUE");
-		// this.cypher.execute("CREATE INDEX ON :" + Link.LABEL + "("
-		// + LinkProperty.URL + ")");
+		// Name, Tag and Link Property should not need to be unique -> only the
+		// uuids are unique, name and url are indexed
+		try (Transaction tx = this.graphDb.beginTx()) {
+			Schema schema = this.graphDb.schema();
+			createUniqueConstraint(schema, Link.LABEL, Link.UUID);
+			createUniqueConstraint(schema, Tag.LABEL, Tag.UUID);
+			createIndex(schema, Link.LABEL, Link.NAME);
+			createIndex(schema, Link.LABEL, Link.URL);
+			createIndex(schema, Tag.LABEL, Tag.NAME);
+			tx.success();
+		} catch (ConstraintViolationException cve) {
+			// e.g. another gateway created the same schema concurrently
+			LOGGER.error("Error on creating indexes and constraints, because=" + cve.getMessage(), cve);
+		}
+
+		try (Transaction tx = this.graphDb.beginTx()) {
+			Schema schema = this.graphDb.schema();
+			try {
+				schema.awaitIndexesOnline(INDEX_ONLINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (IllegalStateException ise) {
+				LOGGER.error("Indexes are not online after " + INDEX_ONLINE_TIMEOUT_SECONDS + " seconds", ise);
+			}
+
+			logIndexStates(schema, Link.LABEL);
+			logIndexStates(schema, Tag.LABEL);
+			tx.success();
+		}
+	}
+
+	/**
+	 * Creates a unique constraint for the property unless it already exists
+	 *
+	 * @param schema
+	 *            the schema of the database
+	 * @param label
+	 *            the label of the nodes
+	 * @param property
+	 *            the unique property
+	 */
+	private void createUniqueConstraint(final Schema schema, final Label label, final String property) {
+		for (ConstraintDefinition constraint : schema.getConstraints(label)) {
+			if (constraint.isConstraintType(ConstraintType.UNIQUENESS)
+					&& constraint.getPropertyKeys().iterator().next().equals(property)) {
+				return;
+			}
+		}
+		schema.constraintFor(label).assertPropertyIsUnique(property).create();
+		LOGGER.info("Created unique constraint on :{}({})", new Object[] { label, property });
+	}
+
+	/**
+	 * Creates an index for the property unless it already exists
+	 *
+	 * @param schema
+	 *            the schema of the database
+	 * @param label
+	 *            the label of the nodes
+	 * @param property
+	 *            the indexed property
+	 */
+	private void createIndex(final Schema schema, final Label label, final String property) {
+		for (IndexDefinition index : schema.getIndexes(label)) {
+			if (index.getPropertyKeys().iterator().next().equals(property)) {
+				return;
+			}
+		}
+		schema.indexFor(label).on(property).create();
+		LOGGER.info("Created index on :{}({})", new Object[] { label, property });
+	}
+
+	/**
+	 * Logs the state of all indexes for a label
+	 *
+	 * @param schema
+	 *            the schema of the database
+	 * @param label
+	 *            the label of the nodes
+	 */
+	private void logIndexStates(final Schema schema, final Label label) {
+		for (IndexDefinition index : schema.getIndexes(label)) {
+			IndexState state = schema.getIndexState(index);
+			if (state == IndexState.FAILED) {
+				LOGGER.error("Index on :{}{} is {}, because={}", new Object[] { label, index.getPropertyKeys(), state,
+						schema.getIndexFailure(index) });
+			} else {
+				LOGGER.info("Index on :{}{} is {} (unique={})", new Object[] { label, index.getPropertyKeys(), state,
+						index.isConstraintIndex() });
+			}
+		}
 	}
 
 	@Override
@@ -86,22 +233,12 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		Validate.notBlank(url, "the url of the link is blank");
 		Validate.notNull(title, "the title of the link is null");
 
-		String uuid = null;
+		String uuid = UUID.randomUUID().toString();
 
 		Node node;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			node = this.graphDb.createNode();
-			node.addLabel(Link.LABEL);
-			node.setProperty(Link.NAME, name);
-			node.setProperty(Link.URL, url);
-			node.setProperty(Link.TITLE, title);
-			node.setProperty(Link.CLICK_COUNT, 0);
-			node.setProperty(Link.SCORE, 0);
-
-			uuid = UUID.randomUUID().toString();
-			node.setProperty(Link.UUID, uuid);
+			node = createLinkNode(uuid, name, url, title);
 			tx.success();
-			LOGGER.debug("Added link: name={}, url={}, title={}", new Object[] { name, url, title });
 		} catch (ConstraintViolationException cve) {
 			LOGGER.error(cve.getMessage(), cve);
 			throw new IllegalArgumentException(String.format(
@@ -109,17 +246,46 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 					cve.getMessage()));
 		}
 
+		this.linkIds.put(uuid, node.getId());
+		fireLinkSaved(uuid);
 		return uuid;
 
 	}
 
+	/**
+	 * Creates a link node, needs a transaction
+	 */
+	private Node createLinkNode(final String uuid, final String name, final String url, final String title) {
+		Node node = this.graphDb.createNode();
+		node.addLabel(Link.LABEL);
+		node.setProperty(Link.NAME, name);
+		node.setProperty(Link.URL, url);
+		node.setProperty(Link.TITLE, title);
+		node.setProperty(Link.CLICK_COUNT, 0);
+		node.setProperty(Link.SCORE, 0);
+		node.setProperty(Link.UUID, uuid);
+		LOGGER.debug("Added link: name={}, url={}, title={}", new Object[] { name, url, title });
+		return node;
+	}
+
 	@Override
 	public void setLinkPropertyValue(final String linkUUID, final String property, final String value) {
 		try (Transaction tx = this.graphDb.beginTx()) {
-			Node link = getNodeByUUID(linkUUID);
-			link.setProperty(property, value);
+			setLinkProperty(linkUUID, property, value);
 			tx.success();
 		}
+		fireLinkSaved(linkUUID);
+	}
+
+	/**
+	 * Sets a property of a link node, needs a transaction
+	 */
+	private void setLinkProperty(final String linkUUID, final String property, final String value) {
+		Node link = getNodeByUUID(linkUUID);
+		if (link == null) {
+			throw new IllegalArgumentException("no link node was found for uuid={" + linkUUID + "}");
+		}
+		link.setProperty(property, value);
 	}
 
 	@Override
@@ -128,6 +294,7 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		Validate.notBlank(propertyValue);
 		Validate.notBlank(newPropertyValue);
 		String internalNewPropertyValue = newPropertyValue; // for logging
+		String linkUUID;
 
 		Node linkToUpdate;
 		try (Transaction tx = this.graphDb.beginTx()) {
@@ -154,8 +321,10 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 			}
 
 			LOGGER.debug("Updated link: property={}, newValue={}", new Object[] { property, internalNewPropertyValue });
+			linkUUID = String.valueOf(linkToUpdate.getProperty(Link.UUID));
 			tx.success();
 		}
+		fireLinkSaved(linkUUID);
 	}
 
 	/**
@@ -196,8 +365,12 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 			links = this.graphDb.findNodesByLabelAndProperty(Link.LABEL, Link.URL, propertyValue);
 			break;
 		case UUID:
-			links = this.graphDb.findNodesByLabelAndProperty(Link.LABEL, Link.UUID, propertyValue);
-			break;
+			Node link = getNodeByUUID(propertyValue);
+			if (link == null) {
+				throw new IllegalArgumentException("no link node was found for property={" + property + "} and value={"
+						+ propertyValue + "}");
+			}
+			return link;
 		default:
 			throw new IllegalArgumentException("property={" + property + "} is not supported");
 		}
@@ -213,17 +386,38 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		}
 	}
 
+	/**
+	 * Retrieves a link by its uuid. The node id is looked up in the
+	 * {@link NodeIdCache} first, the schema index on {@link Link#UUID} is the
+	 * fallback.<br>
+	 * Must be called within a transaction.
+	 *
+	 * @param uuid
+	 *            the uuid of the link
+	 * @return the {@link Node} or <code>null</code> if no node was found
+	 */
 	private Node getNodeByUUID(final String uuid) {
-		String sql = new StringBuilder(128).append("MATCH (link:").append(Link.LABEL).append(") WHERE link.uuid  =~ '")
-				.append(uuid).append("'").append(" RETURN link").toString();
-
-		ExecutionResult execute = null;
+		Long nodeId = this.linkIds.get(uuid);
+		if (nodeId != null) {
+			try {
+				Node link = this.graphDb.getNodeById(nodeId);
+				// node ids are reused, so the node might be another one by now
+				if (link.hasLabel(Link.LABEL) && uuid.equals(link.getProperty(Link.UUID, null))) {
+					return link;
+				}
+			} catch (NotFoundException nfe) {
+				// the link was deleted meanwhile
+			}
+			this.linkIds.remove(uuid);
+		}
 
-		execute = this.cypher.execute(sql);
-		Iterator<Node> links = asJavaIterator(execute.columnAs("link"));
-		while (links.hasNext()) {
-			Node link = links.next();
-			return link;
+		try (ResourceIterator<Node> links = this.graphDb.findNodesByLabelAndProperty(Link.LABEL, Link.UUID, uuid)
+				.iterator()) {
+			if (links.hasNext()) {
+				Node link = links.next();
+				this.linkIds.put(uuid, link.getId());
+				return link;
+			}
 		}
 		return null;
 	}
@@ -236,7 +430,8 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 	@Override
 	public Link getLinkByUUID(final String uuid) {
 		try (Transaction tx = this.graphDb.beginTx()) {
-			return convert(getNodeByUUID(uuid));
+			Node link = getNodeByUUID(uuid);
+			return link == null ? null : convert(link);
 		}
 	}
 
@@ -244,12 +439,9 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 	public List<Link> getAllLinks() {
 		List<Link> retrievedLinks = new ArrayList<>();
 
-		String sql = new StringBuilder(128).append("MATCH (link:").append(Link.LABEL).append(")")
-				.append(" RETURN link").toString();
-
 		ExecutionResult execute = null;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			execute = this.cypher.execute(sql);
+			execute = this.statements.execute(ALL_LINKS, params());
 
 			Iterator<Node> links = asJavaIterator(execute.columnAs("link")); // from
 																				// return
@@ -263,16 +455,38 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		return retrievedLinks;
 	}
 
+	@Override
+	public Page<Link> getAllLinks(final int pageSize, final String cursor) {
+		Validate.isTrue(pageSize > 0, "the page size must be positive");
+		long after = Page.nodeIdBefore(cursor);
+
+		List<Link> links = new ArrayList<>(pageSize);
+		long lastId = after;
+		boolean hasNext = false;
+		try (Transaction tx = this.graphDb.beginTx()) {
+			// one more than the page size tells if there is a next page
+			NodeScan nodes = new NodeScan(this.graphDb, after, Link.LABEL);
+			Node link;
+			while ((link = nodes.next()) != null) {
+				if (links.size() == pageSize) {
+					hasNext = true;
+					break;
+				}
+				links.add(convert(link));
+				lastId = link.getId();
+			}
+		}
+
+		return new Page<Link>(links, hasNext ? Page.cursorAfter(lastId) : null);
+	}
+
 	@Override
 	public List<Tag> getAllTags() {
 		List<Tag> retrievedTags = new ArrayList<>();
 
-		String sql = new StringBuilder(128).append("MATCH (tag:").append(Tag.LABEL).append(")").append(" RETURN tag")
-				.toString();
-
 		ExecutionResult execute = null;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			execute = this.cypher.execute(sql);
+			execute = this.statements.execute(ALL_TAGS, params());
 
 			Iterator<Node> tags = asJavaIterator(execute.columnAs("tag")); // from
 																			// return
@@ -286,104 +500,183 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		return retrievedTags;
 	}
 
-	private Tag convertTag(Node tag) {
-		String name = String.valueOf(tag.getProperty(Tag.NAME));
-		String description = String.valueOf(tag.getProperty(Tag.DESCRIPTION));
-		int clicks = Integer.valueOf(String.valueOf(tag.getProperty(Tag.CLICK_COUNT)));
+	private Tag convertTag(final Node tag) {
 		String uuid = String.valueOf(tag.getProperty(Tag.UUID));
+		return this.resources.entities.getTag(uuid, () -> {
+			String name = String.valueOf(tag.getProperty(Tag.NAME));
+			String description = String.valueOf(tag.getProperty(Tag.DESCRIPTION));
+			int clicks = Integer.valueOf(String.valueOf(tag.getProperty(Tag.CLICK_COUNT)));
 
-		return new Tag(name, description, clicks, uuid);
+			return new Tag(name, description, clicks, uuid);
+		});
 	}
 
 	@Override
 	public List<Link> searchLinks(final String value) {
-		List<Link> retrievedLinks = new ArrayList<>();
-
-		String sql = new StringBuilder(128).append("MATCH (link:").append(Link.LABEL)
-				.append(") WHERE link.{Link.NAME}  =~ '(?i).*").append(value).append(".*'")
-				.append(" OR link.{Link.URL}  =~ '(?i).*").append(value).append(".*'").append(" RETURN link")
-				.toString();
+		Validate.notNull(value);
 
-		sql = sql.replace("{Link.URL}", Link.URL);
-		sql = sql.replace("{Link.NAME}", Link.NAME);
-
-		ExecutionResult execute = null;
+		Set<Long> nodeIds = this.resources.substrings.findLinksByNameOrUrl(value);
 		try (Transaction tx = this.graphDb.beginTx()) {
-			execute = cypher.execute(sql);
-			Iterator<Node> links = asJavaIterator(execute.columnAs("link")); // from
-																				// return
-			// statement
-			while (links.hasNext()) {
-				Node link = links.next();
-				retrievedLinks.add(convert(link));
-			}
+			return loadLinks(nodeIds);
 		}
+	}
 
-		return retrievedLinks;
+	@Override
+	public Page<Link> searchLinks(final String value, final int pageSize, final String cursor) {
+		Validate.notNull(value);
+
+		Set<Long> nodeIds = this.resources.substrings.findLinksByNameOrUrl(value);
+		return loadPage(nodeIds, pageSize, cursor, Link.LABEL, this::convert);
 	}
 
 	@Override
 	public List<Link> searchLinks(final LinkProperty property, final String propertyValue) {
 		Validate.notNull(property);
+		Validate.notNull(propertyValue);
 
-		List<Link> retrievedLinks = new ArrayList<>();
+		Set<Long> nodeIds = null;
+		switch (property) {
+		case NAME:
+			nodeIds = this.resources.substrings.findLinksByName(propertyValue);
+			break;
+		case URL:
+			nodeIds = this.resources.substrings.findLinksByUrl(propertyValue);
+			break;
+		default:
+			throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
+		}
 
-		String sql = new StringBuilder(128).append("MATCH (link:").append(Link.LABEL)
-				.append(") WHERE link.{property}  =~ '(?i).*")
-				// (?i): Case
-				// insensitive
-				// matching
-				.append(propertyValue).append(".*'").append(" RETURN link").toString();
+		List<Link> retrievedLinks;
+		try (Transaction tx = this.graphDb.beginTx()) {
+			retrievedLinks = loadLinks(nodeIds);
+		}
 
-		ExecutionResult execute = null;
+		LOGGER.debug("Retrieved links: property={}, value={}", new Object[] { property, propertyValue });
+		return retrievedLinks;
+	}
+
+	/**
+	 * Loads the page of the nodes, ordered by node id
+	 *
+	 * @param nodeIds
+	 *            the node ids of the complete result
+	 * @param label
+	 *            the label of the nodes
+	 * @param converter
+	 *            converts a node to an item of the page
+	 * @return the page
+	 */
+	private <T> Page<T> loadPage(final Set<Long> nodeIds, final int pageSize, final String cursor, final Label label,
+			final Function<Node, T> converter) {
+		Validate.isTrue(pageSize > 0, "the page size must be positive");
+		long after = Page.nodeIdBefore(cursor);
+
+		// one more than the page size tells if there is a next page
+		List<Long> pageIds = nodeIds.stream().filter(nodeId -> nodeId > after).sorted().limit(pageSize + 1L)
+				.collect(Collectors.toList());
+		boolean hasNext = pageIds.size() > pageSize;
+		if (hasNext) {
+			pageIds = pageIds.subList(0, pageSize);
+		}
+
+		List<T> items = new ArrayList<>(pageIds.size());
 		try (Transaction tx = this.graphDb.beginTx()) {
-			switch (property) {
-			case NAME:
-				execute = this.cypher.execute(sql.replace("{property}", Link.NAME));
-				break;
-			case URL:
-				execute = this.cypher.execute(sql.replace("{property}", Link.URL));
-				break;
-			default:
-				throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
+			for (Long nodeId : pageIds) {
+				Node node = loadNode(nodeId, label);
+				if (node != null) {
+					items.add(converter.apply(node));
+				}
 			}
+		}
+		return new Page<T>(items, hasNext ? Page.cursorAfter(pageIds.get(pageSize - 1)) : null);
+	}
 
-			Iterator<Node> links = asJavaIterator(execute.columnAs("link")); // from
-																				// return
-			// statement
-			while (links.hasNext()) {
-				Node link = links.next();
-				retrievedLinks.add(convert(link));
+	/**
+	 * Loads and converts the links with the given node ids, skipping nodes
+	 * which were deleted meanwhile.<br>
+	 * Must be called within a transaction.
+	 *
+	 * @param nodeIds
+	 *            the node ids found in the {@link SubstringIndex}
+	 * @return the links
+	 */
+	private List<Link> loadLinks(final Set<Long> nodeIds) {
+		List<Link> links = new ArrayList<>(nodeIds.size());
+		for (Long nodeId : nodeIds) {
+			Node link = loadNode(nodeId, Link.LABEL);
+			if (link != null) {
+				links.add(convert(link));
 			}
 		}
+		return links;
+	}
 
-		LOGGER.debug("Retrieved links: property={}, value={}", new Object[] { property, propertyValue });
-		return retrievedLinks;
+	/**
+	 * Loads a node by id, must be called within a transaction
+	 *
+	 * @param nodeId
+	 *            the id of the node
+	 * @param label
+	 *            the expected label of the node
+	 * @return the node or <code>null</code> if there is no such node with the
+	 *         label
+	 */
+	private Node loadNode(final long nodeId, final Label label) {
+		try {
+			Node node = this.graphDb.getNodeById(nodeId);
+			return node.hasLabel(label) ? node : null;
+		} catch (NotFoundException nfe) {
+			return null;
+		}
 	}
 
 	private Link convert(final Node linkNode) {
-		String name = String.valueOf(linkNode.getProperty(Link.NAME));
-		String title = String.valueOf(linkNode.getProperty(Link.TITLE));
-		String url = String.valueOf(linkNode.getProperty(Link.URL));
-		int clicks = Integer.valueOf(String.valueOf(linkNode.getProperty(Link.CLICK_COUNT)));
-		double score = Double.valueOf(String.valueOf(linkNode.getProperty(Link.SCORE)));
 		String uuid = String.valueOf(linkNode.getProperty(Link.UUID));
+		return this.resources.entities.getLink(uuid, () -> {
+			String name = String.valueOf(linkNode.getProperty(Link.NAME));
+			String title = String.valueOf(linkNode.getProperty(Link.TITLE));
+			String url = String.valueOf(linkNode.getProperty(Link.URL));
+			int clicks = Integer.valueOf(String.valueOf(linkNode.getProperty(Link.CLICK_COUNT)));
+			double score = Double.valueOf(String.valueOf(linkNode.getProperty(Link.SCORE)));
+			double hotness = (Double) linkNode.getProperty(Link.HOTNESS, 0.0);
+			long hotnessUpdated = (Long) linkNode.getProperty(Link.HOTNESS_UPDATED, 0L);
+
+			return new Link(name, title, url, clicks, score, uuid, hotness, hotnessUpdated);
+		});
+	}
 
-		return new Link(name, title, url, clicks, score, uuid);
+	/**
+	 * Builds the parameter value for the given deletion mode
+	 *
+	 * @param value
+	 *            the value of the property
+	 * @param mode
+	 *            the deletion mode
+	 * @return the value itself for {@link DeletionMode#EXACT} or a regular
+	 *         expression matching it as substring for {@link DeletionMode#SOFT}
+	 */
+	private static String deletionValue(final String value, final DeletionMode mode) {
+		switch (mode) {
+		case EXACT:
+			return value;
+		case SOFT:
+			return ".*" + Pattern.quote(value) + ".*";
+		default:
+			throw new IllegalArgumentException("Deletion mode={" + mode.name() + "} is not supported");
+		}
 	}
 
 	@Override
 	public void deleteLink(String uuid) {
 		Validate.notBlank(uuid);
 
-		String query = null;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			// step 1: build query
-			query = "MATCH (link:" + Link.LABEL + " {" + Link.UUID + ":'" + uuid + "'}) DELETE link";
-
-			this.cypher.execute(query);
+			this.statements.execute(DELETE_LINK_BY_UUID, params("uuid", uuid));
 			tx.success();
+		} finally {
+			this.linkIds.remove(uuid);
 		}
+		fireLinkDeleted(uuid);
 	}
 
 	@Override
@@ -394,39 +687,32 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 
 		String query = null;
 
-		// step 1: build query
-		switch (mode) {
-		case EXACT:
-			query = "MATCH (link:" + Link.LABEL + " {<property>: '" + propertyValue + "'}) DELETE link";
+		// step 1: select statement
+		switch (property) {
+		case NAME:
+			query = mode == DeletionMode.EXACT ? DELETE_LINK_BY_EXACT_NAME : DELETE_LINK_BY_NAME;
 			break;
-		case SOFT:
-			query = new StringBuilder(128).append("MATCH (link:").append(Link.LABEL).append(")")
-					.append("WHERE link.<property>  =~ '.*").append(propertyValue).append(".*'").append(" DELETE link")
-					.toString();
+		case URL:
+			query = mode == DeletionMode.EXACT ? DELETE_LINK_BY_EXACT_URL : DELETE_LINK_BY_URL;
 			break;
 		default:
-			throw new IllegalArgumentException("Deletion mode={" + mode.name() + "} is not supported");
+			throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
 		}
 
-		// step 2: replace variables and execute query
+		// step 2: execute statement with the value for the mode
+		Map<String, Object> parameters = params("value", deletionValue(propertyValue, mode));
+		List<String> deletedUUIDs;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			switch (property) {
-			case NAME:
-				query = query.replace("<property>", Link.NAME);
-				break;
-			case URL:
-				query = query.replace("<property>", Link.URL);
-				break;
-			default:
-				throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
-			}
-
 			LOGGER.debug("Delete Link query=\"{}\" for linkProperty={}, value={} and mode={}", new Object[] { query,
 					property, propertyValue, mode });
 
-			this.cypher.execute(query);
+			deletedUUIDs = asJavaList(this.statements.execute(query, parameters).<String> columnAs("uuid").toList());
 			tx.success();
 		}
+		for (String uuid : deletedUUIDs) {
+			this.linkIds.remove(uuid);
+			fireLinkDeleted(uuid);
+		}
 	}
 
 	@Override
@@ -434,18 +720,10 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		Validate.notBlank(name, "the name of the tag is blank");
 		Validate.isTrue(description.length() <= 255, "the description is longer than 255 chars");
 
-		String uuid = null;
+		String uuid = UUID.randomUUID().toString();
 
-		Node node;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			node = this.graphDb.createNode();
-			node.addLabel(Tag.LABEL);
-			uuid = UUID.randomUUID().toString();
-			node.setProperty(Tag.UUID, uuid);
-			node.setProperty(Tag.NAME, name);
-			node.setProperty(Tag.DESCRIPTION, description);
-			node.setProperty(Tag.CLICK_COUNT, 0);
-			LOGGER.debug("Added tag: name={}, description={}", new Object[] { name, description });
+			createTagNode(uuid, name, description);
 			tx.success();
 		} catch (ConstraintViolationException cve) {
 			LOGGER.error(cve.getMessage(), cve);
@@ -454,15 +732,31 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 					cve.getMessage()));
 		}
 
+		fireTagSaved(uuid);
 		return uuid;
 	}
 
+	/**
+	 * Creates a tag node, needs a transaction
+	 */
+	private Node createTagNode(final String uuid, final String name, final String description) {
+		Node node = this.graphDb.createNode();
+		node.addLabel(Tag.LABEL);
+		node.setProperty(Tag.UUID, uuid);
+		node.setProperty(Tag.NAME, name);
+		node.setProperty(Tag.DESCRIPTION, description);
+		node.setProperty(Tag.CLICK_COUNT, 0);
+		LOGGER.debug("Added tag: name={}, description={}", new Object[] { name, description });
+		return node;
+	}
+
 	@Override
 	public void updateTag(final TagProperty property, final String propertyValue, final String newPropertyValue) {
 		Validate.notNull(property);
 		Validate.notBlank(propertyValue);
 		Validate.notBlank(newPropertyValue);
 		String internalNewPropertyValue = newPropertyValue; // for logging
+		String tagUUID;
 
 		Node tagToUpdate;
 		try (Transaction tx = this.graphDb.beginTx()) {
@@ -482,8 +776,10 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 			}
 
 			LOGGER.debug("Updated tag: property={}, newValue={}", new Object[] { property, internalNewPropertyValue });
+			tagUUID = String.valueOf(tagToUpdate.getProperty(Tag.UUID));
 			tx.success();
 		}
+		fireTagSaved(tagUUID);
 	}
 
 	/**
@@ -524,40 +820,26 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 
 		Map<Tag, Set<Link>> resultMap = new HashMap<Tag, Set<Link>>();
 
-		//@formatter:off
-		String sql = new StringBuilder(128).append("MATCH (tag:").append(Tag.LABEL)
-				.append(") -[:TAGGED]-> (link:"+Link.LABEL+") WHERE tag." + Tag.NAME + "  =~ '(?i).*").append(tagName).append(".*'")
-				.append(" RETURN  {t:tag, l:collect(link)} as hits")
-				.toString();
-		//@formatter:on
-
-		ExecutionResult result = null;
+		Set<Long> tagIds = this.resources.substrings.findTagsByName(tagName);
 		try (Transaction tx = this.graphDb.beginTx()) {
-			result = this.cypher.execute(sql);
-
-			// Return the wrapper structure. It is useless, remove it somehow if
-			// possible
-			Iterator<scala.collection.Map<Node, scala.collection.immutable.List<Node>>> hits = asJavaIterator(result
-					.columnAs("hits"));
-
-			// The wrapper stucture contains the objects we are interested in
-			while (hits.hasNext()) {
-				// First we extract the 'map key' with label 't' -> see cypher
-				// and convert it to TAG
-				Map<Node, scala.collection.immutable.List<Node>> next = asJavaMap(hits.next());
-				Tag tag = convertTag((Node) next.get("t"));
+			for (Long tagId : tagIds) {
+				Node tagNode = loadNode(tagId, Tag.LABEL);
+				if (tagNode == null) {
+					continue;
+				}
 
-				// Then we extract the 'map value' with label 'l' -> see cypher
-				// and convert it to set of LINK
+				// Only tags with links are hits
 				HashSet<Link> links = new HashSet<Link>();
-				List<Node> linkJavaList = asJavaList(next.get("l"));
-				for (Node node : linkJavaList) {
-					Link link = convert(node);
-					links.add(link);
+				for (Relationship tagged : tagNode.getRelationships(TAGGED_RELATIONSHIP, Direction.OUTGOING)) {
+					Node linkNode = tagged.getEndNode();
+					if (linkNode.hasLabel(Link.LABEL)) {
+						links.add(convert(linkNode));
+					}
+				}
+				if (!links.isEmpty()) {
+					resultMap.put(convertTag(tagNode), links);
 				}
-				resultMap.put(tag, links);
 			}
-
 		}
 
 		return resultMap;
@@ -568,33 +850,15 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		Validate.notNull(property);
 		Validate.notBlank(propertyValue);
 
-		List<Tag> retrievedTags = new ArrayList<>();
-
-		String sql = new StringBuilder(128).append("MATCH (tag:").append(Tag.LABEL)
-				.append(") WHERE tag.{property}  =~ '(?i).*").append(propertyValue).append(".*'").append(" RETURN tag")
-				.toString();
+		Set<Long> tagIds = findTagIds(property, propertyValue);
 
-		ExecutionResult execute = null;
+		List<Tag> retrievedTags = new ArrayList<>(tagIds.size());
 		try (Transaction tx = this.graphDb.beginTx()) {
-			switch (property) {
-			case NAME:
-				execute = this.cypher.execute(sql.replace("{property}", Tag.NAME));
-				break;
-			default:
-				throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
-			}
-
-			Iterator<Node> tags = asJavaIterator(execute.columnAs("tag")); // from
-																			// return
-			// statement
-			while (tags.hasNext()) {
-				Node tag = tags.next();
-				String name = String.valueOf(tag.getProperty(Tag.NAME));
-				String description = String.valueOf(tag.getProperty(Tag.DESCRIPTION));
-				int clicks = Integer.valueOf(String.valueOf(tag.getProperty(Tag.CLICK_COUNT)));
-				String uuid = (String) tag.getProperty(Tag.UUID);
-
-				retrievedTags.add(new Tag(name, description, clicks, uuid));
+			for (Long tagId : tagIds) {
+				Node tag = loadNode(tagId, Tag.LABEL);
+				if (tag != null) {
+					retrievedTags.add(convertTag(tag));
+				}
 			}
 		}
 
@@ -602,6 +866,25 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		return retrievedTags;
 	}
 
+	@Override
+	public Page<Tag> searchTags(final TagProperty property, final String propertyValue, final int pageSize,
+			final String cursor) {
+		Validate.notNull(property);
+		Validate.notBlank(propertyValue);
+
+		Set<Long> tagIds = findTagIds(property, propertyValue);
+		return loadPage(tagIds, pageSize, cursor, Tag.LABEL, this::convertTag);
+	}
+
+	private Set<Long> findTagIds(final TagProperty property, final String propertyValue) {
+		switch (property) {
+		case NAME:
+			return this.resources.substrings.findTagsByName(propertyValue);
+		default:
+			throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
+		}
+	}
+
 	@Override
 	public void deleteTag(final TagProperty property, final String propertyValue, final DeletionMode mode) {
 		Validate.notNull(property);
@@ -610,36 +893,28 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 
 		String query = null;
 
-		// step 1: build query
-		switch (mode) {
-		case EXACT:
-			query = "MATCH (tag:" + Tag.LABEL + " {<property>: '" + propertyValue + "'}) DELETE tag";
-			break;
-		case SOFT:
-			query = new StringBuilder(128).append("MATCH (tag:").append(Tag.LABEL).append(")")
-					.append("WHERE tag.<property>  =~ '.*").append(propertyValue).append(".*'").append(" DELETE tag")
-					.toString();
+		// step 1: select statement
+		switch (property) {
+		case NAME:
+			query = mode == DeletionMode.EXACT ? DELETE_TAG_BY_EXACT_NAME : DELETE_TAG_BY_NAME;
 			break;
 		default:
-			throw new IllegalArgumentException("Deletion mode={" + mode.name() + "} is not supported");
+			throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
 		}
 
-		// step 2: replace variables and execute query
+		// step 2: execute statement with the value for the mode
+		Map<String, Object> parameters = params("value", deletionValue(propertyValue, mode));
+		List<String> deletedUUIDs;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			switch (property) {
-			case NAME:
-				query = query.replace("<property>", Tag.NAME);
-				break;
-			default:
-				throw new IllegalArgumentException("property '" + property.name() + "' is not supported");
-			}
-
 			LOGGER.debug("Delete Tag query=\"{}\" for tagProperty={}, value={} and mode={}", new Object[] { query,
 					property, propertyValue, mode });
 
-			this.cypher.execute(query);
+			deletedUUIDs = asJavaList(this.statements.execute(query, parameters).<String> columnAs("uuid").toList());
 			tx.success();
 		}
+		for (String uuid : deletedUUIDs) {
+			fireTagDeleted(uuid);
+		}
 	}
 
 	@Override
@@ -648,20 +923,12 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		Validate.notBlank(tagUUID);
 
 		try (Transaction tx = this.graphDb.beginTx()) {
-			//@formatter:off
-			String query = "MATCH "
-					+ "(link:" + Link.LABEL + " {" + Link.UUID + ": '" + linkUUID + "'}), "
-					+ "(tag:" + Tag.LABEL + " {" + Tag.UUID + ": '" + tagUUID + "'}) "
-					+ "CREATE (tag)-[:" + TAGGED + "]->(link)";
-			//@formatter:on
-			// LOGGER.debug("Build Tagging query=\"{}\" for link='{}' and tag='{}'",
-			// new Object[] { query, linkUUID,
-			// tagUUID });
-			this.cypher.execute(query);
+			this.statements.execute(ADD_TAG_TO_LINK, params("linkUUID", linkUUID, "tagUUID", tagUUID));
 
 			LOGGER.debug("Added tag to link: {}-[TAGGED]-{}", new Object[] { tagUUID, linkUUID });
 			tx.success();
 		}
+		fireLinkSaved(linkUUID);
 	}
 
 	@Override
@@ -670,22 +937,14 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		Validate.notBlank(tagUUID);
 
 		try (Transaction tx = this.graphDb.beginTx()) {
-			//@formatter:off
-			String query = "MATCH "
-					+ "(link:" + Link.LABEL + " {" + Link.UUID + ": '" + linkUUID + "'})"
-					+ "<-[t:TAGGED]-"
-					+ "(tag:" + Tag.LABEL + " {" + Tag.UUID + ": '" + tagUUID + "'}) "
-					+ "DELETE t";
-			//@formatter:on
-
-			LOGGER.debug("Build Tagging query=\"{}\" for link='{}' and tag='{}'", new Object[] { query, linkUUID,
-					tagUUID });
-			ExecutionResult executionResult = this.cypher.execute(query);
+			ExecutionResult executionResult = this.statements.execute(REMOVE_TAG_FROM_LINK,
+					params("linkUUID", linkUUID, "tagUUID", tagUUID));
 
 			LOGGER.debug(executionResult.dumpToString());
 			LOGGER.debug("Removed tag from link: {}-[TAGGED]->{}", new Object[] { linkUUID, tagUUID });
 			tx.success();
 		}
+		fireLinkSaved(linkUUID);
 	}
 
 	/**
@@ -702,39 +961,247 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 		List<Tag> foundTags = new ArrayList<Tag>();
 		ExecutionResult execute = null;
 		try (Transaction tx = this.graphDb.beginTx()) {
-			execute = this.cypher.execute("MATCH (:Link {uuid: '" + linkUUID + "'})<-[:" + TAGGED
-					+ "]-(tag:Tag) RETURN tag");
+			execute = this.statements.execute(TAGS_FOR_LINK, params("uuid", linkUUID));
 			tx.success();
 
 			Iterator<Node> tags = asJavaIterator(execute.columnAs("tag")); // from
 																			// return
 			// statement
 			while (tags.hasNext()) {
-				Node tag = tags.next();
-				String name = String.valueOf(tag.getProperty(Tag.NAME));
-				String description = String.valueOf(tag.getProperty(Tag.DESCRIPTION));
-				int clicks = Integer.valueOf(String.valueOf(tag.getProperty(Link.CLICK_COUNT)));
-				String uuid = (String) tag.getProperty(Tag.UUID);
+				foundTags.add(convertTag(tags.next()));
+			}
+		}
+
+		return foundTags;
+	}
+
+	@Override
+	public Map<String, List<Tag>> getTagsForLinks(final Collection<String> linkUUIDs) {
+		Validate.notNull(linkUUIDs);
 
-				foundTags.add(new Tag(name, description, clicks, uuid));
+		Map<String, List<Tag>> foundTags = new HashMap<String, List<Tag>>(linkUUIDs.size() * 2);
+		for (String linkUUID : linkUUIDs) {
+			foundTags.put(linkUUID, new ArrayList<Tag>());
+		}
+		if (foundTags.isEmpty()) {
+			return foundTags;
+		}
+
+		ExecutionResult execute = null;
+		try (Transaction tx = this.graphDb.beginTx()) {
+			execute = this.statements.execute(TAGS_FOR_LINKS, params("uuids", new ArrayList<String>(foundTags.keySet())));
+
+			// One row per link: {uuid: <link uuid>, tags: <tags of the link>}
+			Iterator<scala.collection.Map<String, Object>> hits = asJavaIterator(execute.columnAs("hits"));
+			while (hits.hasNext()) {
+				Map<String, Object> hit = asJavaMap(hits.next());
+				List<Tag> tagsOfLink = foundTags.get(hit.get("uuid"));
+
+				@SuppressWarnings("unchecked")
+				List<Node> tagNodes = asJavaList((scala.collection.immutable.List<Node>) hit.get("tags"));
+				for (Node tagNode : tagNodes) {
+					tagsOfLink.add(convertTag(tagNode));
+				}
 			}
 		}
 
+		LOGGER.debug("Retrieved tags for {} links", new Object[] { linkUUIDs.size() });
 		return foundTags;
 	}
 
+	@Override
+	public Tag getTagByUUID(final String uuid) {
+		try (Transaction tx = this.graphDb.beginTx();
+				ResourceIterator<Node> tags = this.graphDb.findNodesByLabelAndProperty(Tag.LABEL, Tag.UUID, uuid)
+						.iterator()) {
+			return tags.hasNext() ? convertTag(tags.next()) : null;
+		}
+	}
+
+	@Override
+	public void addPersistenceListener(final PersistenceListener listener) {
+		Validate.notNull(listener);
+		this.resources.listeners.add(listener);
+	}
+
+	@Override
+	public void removePersistenceListener(final PersistenceListener listener) {
+		this.resources.listeners.remove(listener);
+	}
+
+	private void fireLinkSaved(final String linkUUID) {
+		for (PersistenceListener listener : this.resources.listeners) {
+			try {
+				listener.linkSaved(linkUUID);
+			} catch (RuntimeException e) {
+				LOGGER.error("Error notifying " + listener + " about saved link " + linkUUID, e);
+			}
+		}
+	}
+
+	private void fireLinkDeleted(final String linkUUID) {
+		for (PersistenceListener listener : this.resources.listeners) {
+			try {
+				listener.linkDeleted(linkUUID);
+			} catch (RuntimeException e) {
+				LOGGER.error("Error notifying " + listener + " about deleted link " + linkUUID, e);
+			}
+		}
+	}
+
+	private void fireTagSaved(final String tagUUID) {
+		for (PersistenceListener listener : this.resources.listeners) {
+			try {
+				listener.tagSaved(tagUUID);
+			} catch (RuntimeException e) {
+				LOGGER.error("Error notifying " + listener + " about saved tag " + tagUUID, e);
+			}
+		}
+	}
+
+	private void fireTagDeleted(final String tagUUID) {
+		for (PersistenceListener listener : this.resources.listeners) {
+			try {
+				listener.tagDeleted(tagUUID);
+			} catch (RuntimeException e) {
+				LOGGER.error("Error notifying " + listener + " about deleted tag " + tagUUID, e);
+			}
+		}
+	}
+
+	@Override
+	public Batch batch() {
+		return new GatewayBatch();
+	}
+
+	/**
+	 * Collects the changes as operations, which are run in one transaction on
+	 * commit
+	 */
+	private final class GatewayBatch implements Batch {
+
+		private final List<Runnable> operations = new ArrayList<Runnable>();
+		private final Set<String> savedLinks = new LinkedHashSet<String>();
+		private final Set<String> savedTags = new LinkedHashSet<String>();
+		private final Map<String, Node> createdLinks = new HashMap<String, Node>();
+		private boolean committed = false;
+
+		@Override
+		public String addLink(final String name, final String url, final String title) {
+			Validate.notBlank(name, "the name of the link is blank");
+			Validate.notBlank(url, "the url of the link is blank");
+			Validate.notNull(title, "the title of the link is null");
+
+			String uuid = UUID.randomUUID().toString();
+			this.operations.add(() -> this.createdLinks.put(uuid, createLinkNode(uuid, name, url, title)));
+			this.savedLinks.add(uuid);
+			return uuid;
+		}
+
+		@Override
+		public void setLinkPropertyValue(final String linkUUID, final String property, final String value) {
+			Validate.notBlank(linkUUID);
+			Validate.notBlank(property);
+
+			this.operations.add(() -> {
+				Node created = this.createdLinks.get(linkUUID);
+				if (created != null) {
+					created.setProperty(property, value);
+				} else {
+					setLinkProperty(linkUUID, property, value);
+				}
+			});
+			this.savedLinks.add(linkUUID);
+		}
+
+		@Override
+		public String addTag(final String name, final String description) {
+			Validate.notBlank(name, "the name of the tag is blank");
+			Validate.isTrue(description.length() <= 255, "the description is longer than 255 chars");
+
+			String uuid = UUID.randomUUID().toString();
+			this.operations.add(() -> createTagNode(uuid, name, description));
+			this.savedTags.add(uuid);
+			return uuid;
+		}
+
+		@Override
+		public void addTagToLink(final String linkUUID, final String tagUUID) {
+			Validate.notBlank(linkUUID);
+			Validate.notBlank(tagUUID);
+
+			this.operations.add(() -> {
+				PersistenceGatewayImpl.this.statements.execute(ADD_TAG_TO_LINK,
+						params("linkUUID", linkUUID, "tagUUID", tagUUID));
+				LOGGER.debug("Added tag to link: {}-[TAGGED]-{}", new Object[] { tagUUID, linkUUID });
+			});
+			this.savedLinks.add(linkUUID);
+		}
+
+		@Override
+		public void removeTagFromLink(final String linkUUID, final String tagUUID) {
+			Validate.notBlank(linkUUID);
+			Validate.notBlank(tagUUID);
+
+			this.operations.add(() -> {
+				PersistenceGatewayImpl.this.statements.execute(REMOVE_TAG_FROM_LINK,
+						params("linkUUID", linkUUID, "tagUUID", tagUUID));
+				LOGGER.debug("Removed tag from link: {}-[TAGGED]->{}", new Object[] { linkUUID, tagUUID });
+			});
+			this.savedLinks.add(linkUUID);
+		}
+
+		@Override
+		public void commit() {
+			Validate.validState(!this.committed, "the batch was already committed");
+			this.committed = true;
+			if (this.operations.isEmpty()) {
+				return;
+			}
+
+			try (Transaction tx = PersistenceGatewayImpl.this.graphDb.beginTx()) {
+				for (Runnable operation : this.operations) {
+					operation.run();
+				}
+				tx.success();
+			} catch (ConstraintViolationException cve) {
+				LOGGER.error(cve.getMessage(), cve);
+				throw new IllegalArgumentException("Error on committing batch, because=" + cve.getMessage());
+			}
+			LOGGER.debug("Committed batch of {} changes", new Object[] { this.operations.size() });
+
+			for (Entry<String, Node> created : this.createdLinks.entrySet()) {
+				PersistenceGatewayImpl.this.linkIds.put(created.getKey(), created.getValue().getId());
+			}
+			for (String tagUUID : this.savedTags) {
+				fireTagSaved(tagUUID);
+			}
+			for (String linkUUID : this.savedLinks) {
+				fireLinkSaved(linkUUID);
+			}
+		}
+	}
+
+	/**
+	 * @return the registry of the statements executed by this gateway, e.g. to
+	 *         see which templates are executed how often
+	 */
+	public StatementRegistry getStatementRegistry() {
+		return this.statements;
+	}
+
 	@Override
 	public void incrementLinkClick(final String linkUUID) {
-		Node linkToUpdate;
-		try (Transaction tx = this.graphDb.beginTx()) {
-			linkToUpdate = retrieveLinkByExactProperty(LinkProperty.UUID, linkUUID);
-			int oldClickCount = Integer.parseInt(String.valueOf(linkToUpdate.getProperty(Link.CLICK_COUNT)));
-			int newClickCount = ++oldClickCount;
-			linkToUpdate.setProperty(Link.CLICK_COUNT, newClickCount);
+		Validate.notBlank(linkUUID);
 
-			LOGGER.debug("Increasing click count for link '" + linkUUID + "' to: " + newClickCount);
+		// a read transaction only, the click is written by the next flush
+		try (Transaction tx = this.graphDb.beginTx()) {
+			if (getNodeByUUID(linkUUID) == null) {
+				throw new IllegalArgumentException("no link node was found for uuid={" + linkUUID + "}");
+			}
 			tx.success();
 		}
+		this.resources.clicks.incrementLink(linkUUID);
 	}
 
 	@Override
@@ -744,7 +1211,36 @@ public class PersistenceGatewayImpl implements PersistenceGateway, Relationships
 
 	@Override
 	public void incrementTagClick(final String tagName) {
-		updateTag(TagProperty.CLICK_COUNT, tagName, tagName);
+		Validate.notBlank(tagName);
+
+		// a read transaction only, the click is written by the next flush. It
+		// is counted by uuid, so it stays with the tag if it is renamed
+		String tagUUID;
+		try (Transaction tx = this.graphDb.beginTx()) {
+			tagUUID = String.valueOf(retrieveTagByExactProperty(TagProperty.NAME, tagName).getProperty(Tag.UUID));
+			tx.success();
+		}
+		this.resources.clicks.incrementTag(tagUUID);
+	}
+
+	@Override
+	public void flushClicks() {
+		this.resources.clicks.flush();
+	}
+
+	@Override
+	public ClickHistory getClickHistory(final String linkUUID) {
+		Validate.notBlank(linkUUID);
+
+		try (Transaction tx = this.graphDb.beginTx()) {
+			Node link = getNodeByUUID(linkUUID);
+			return link == null ? null : ClickHistory.read(link);
+		}
+	}
+
+	@Override
+	public CacheStatistics getEntityCacheStatistics() {
+		return this.resources.entities.getStatistics();
 	}
 
 	/**
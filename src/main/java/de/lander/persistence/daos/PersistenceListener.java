@@ -0,0 +1,68 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+/**
+ * Listener for the changes written through a {@link PersistenceGateway}<br>
+ * The listeners are notified after the transaction of the change was closed.
+ * They are shared by all gateways of the same database.
+ *
+ * @author mvogel
+ *
+ */
+public interface PersistenceListener {
+
+	/**
+	 * A link was created or changed, including the tags of the link
+	 *
+	 * @param linkUUID
+	 *            the uuid of the link
+	 */
+	void linkSaved(String linkUUID);
+
+	/**
+	 * A link was deleted
+	 *
+	 * @param linkUUID
+	 *            the uuid of the deleted link
+	 */
+	void linkDeleted(String linkUUID);
+
+	/**
+	 * A tag was created or changed
+	 *
+	 * @param tagUUID
+	 *            the uuid of the tag
+	 */
+	void tagSaved(String tagUUID);
+
+	/**
+	 * A tag was deleted
+	 *
+	 * @param tagUUID
+	 *            the uuid of the deleted tag
+	 */
+	void tagDeleted(String tagUUID);
+
+	/**
+	 * Clicks of a link were written, only its click count and click history
+	 * changed. Listeners depending on clicks override this, nothing is done by
+	 * default.
+	 *
+	 * @param linkUUID
+	 *            the uuid of the clicked link
+	 */
+	default void linkClicked(String linkUUID) {
+	}
+
+	/**
+	 * Clicks of a tag were written, only its click count changed. Listeners
+	 * depending on clicks override this, nothing is done by default.
+	 *
+	 * @param tagUUID
+	 *            the uuid of the clicked tag
+	 */
+	default void tagClicked(String tagUUID) {
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.neo4j.cypher.ExecutionEngine;
+import org.neo4j.cypher.ExecutionResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Registry of the parameterized cypher statements executed by the
+ * {@link PersistenceGatewayImpl}<br>
+ * The {@link ExecutionEngine} caches execution plans by query text, so every
+ * statement is a fixed template and all values are passed as parameters. One
+ * registry (and therefore one plan cache) is shared by all gateways of the
+ * same database, see {@link GatewayResources}.
+ *
+ * @author mvogel
+ *
+ */
+public final class StatementRegistry {
+
+	private final ExecutionEngine cypher;
+	private final ConcurrentMap<String, AtomicLong> executions = new ConcurrentHashMap<>();
+	private final AtomicLong firstUses = new AtomicLong();
+	private final AtomicLong reuses = new AtomicLong();
+
+	/**
+	 * Creates a new registry
+	 *
+	 * @param graphDb
+	 *            the database to execute the statements on
+	 */
+	StatementRegistry(final GraphDatabaseService graphDb) {
+		this.cypher = new ExecutionEngine(graphDb, StringLogger.DEV_NULL);
+	}
+
+	/**
+	 * Executes a statement template with the given parameters
+	 *
+	 * @param statement
+	 *            the cypher statement; must not contain any literal values
+	 *            (MANDATORY)
+	 * @param parameters
+	 *            the parameters referenced by the statement (MANDATORY)
+	 * @return the result of the execution
+	 */
+	public ExecutionResult execute(final String statement, final Map<String, Object> parameters) {
+		AtomicLong counter = this.executions.get(statement);
+		if (counter == null) {
+			AtomicLong previous = this.executions.putIfAbsent(statement, counter = new AtomicLong());
+			if (previous != null) {
+				counter = previous;
+			}
+		}
+
+		// counts the template text only, whether the engine still has its
+		// plan cached is not visible here
+		if (counter.getAndIncrement() == 0) {
+			this.firstUses.incrementAndGet();
+		} else {
+			this.reuses.incrementAndGet();
+		}
+
+		return this.cypher.execute(statement, parameters);
+	}
+
+	/**
+	 * Builds a parameter map from alternating names and values
+	 *
+	 * @param namesAndValues
+	 *            name1, value1, name2, value2, ...
+	 * @return the parameter map
+	 */
+	public static Map<String, Object> params(final Object... namesAndValues) {
+		Validate.isTrue(namesAndValues.length % 2 == 0, "parameters must be given as name/value pairs");
+
+		Map<String, Object> parameters = new HashMap<String, Object>(namesAndValues.length);
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			parameters.put(String.valueOf(namesAndValues[i]), namesAndValues[i + 1]);
+		}
+		return parameters;
+	}
+
+	/**
+	 * @return the number of executions of a template already executed by this
+	 *         registry before; not the hits of the plan cache of the engine,
+	 *         which may have evicted the plan meanwhile
+	 */
+	public long getReuses() {
+		return this.reuses.get();
+	}
+
+	/**
+	 * @return the number of executions of a template executed by this registry
+	 *         for the first time
+	 */
+	public long getFirstUses() {
+		return this.firstUses.get();
+	}
+
+	/**
+	 * @return the number of distinct statements executed so far
+	 */
+	public int getStatementCount() {
+		return this.executions.size();
+	}
+
+	/**
+	 * @return the number of executions per statement
+	 */
+	public Map<String, Long> getExecutionCounts() {
+		Map<String, Long> counts = new HashMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> execution : this.executions.entrySet()) {
+			counts.put(execution.getKey(), execution.getValue().get());
+		}
+		return counts;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("StatementRegistry [statements=").append(getStatementCount()).append(", reuses=")
+				.append(getReuses()).append(", firstUses=").append(getFirstUses()).append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Case insensitive substring search over {@link Link#NAME}, {@link Link#URL}
+ * and {@link Tag#NAME} backed by {@link TrigramIndex}es<br>
+ * Schema indexes cannot answer infix queries, so the index is built from the
+ * database on first use and maintained as a {@link PersistenceListener}.
+ *
+ * @author mvogel
+ *
+ */
+final class SubstringIndex implements PersistenceListener {
+
+	private final GraphDatabaseService graphDb;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile boolean built = false;
+
+	private final TrigramIndex linkNames = new TrigramIndex();
+	private final TrigramIndex linkUrls = new TrigramIndex();
+	private final TrigramIndex tagNames = new TrigramIndex();
+	private final Map<String, Long> linkIds = new HashMap<String, Long>();
+	private final Map<String, Long> tagIds = new HashMap<String, Long>();
+
+	/**
+	 * Creates a new, not yet built index
+	 *
+	 * @param graphDb
+	 *            the database to index
+	 */
+	SubstringIndex(final GraphDatabaseService graphDb) {
+		this.graphDb = graphDb;
+	}
+
+	/**
+	 * @param substring
+	 *            the substring
+	 * @return the node ids of the links whose name contains the substring
+	 */
+	Set<Long> findLinksByName(final String substring) {
+		return find(this.linkNames, substring);
+	}
+
+	/**
+	 * @param substring
+	 *            the substring
+	 * @return the node ids of the links whose url contains the substring
+	 */
+	Set<Long> findLinksByUrl(final String substring) {
+		return find(this.linkUrls, substring);
+	}
+
+	/**
+	 * @param substring
+	 *            the substring
+	 * @return the node ids of the links whose name or url contains the
+	 *         substring
+	 */
+	Set<Long> findLinksByNameOrUrl(final String substring) {
+		ensureBuilt();
+		this.lock.readLock().lock();
+		try {
+			Set<Long> nodeIds = new HashSet<Long>(this.linkNames.find(substring));
+			nodeIds.addAll(this.linkUrls.find(substring));
+			return nodeIds;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param substring
+	 *            the substring
+	 * @return the node ids of the tags whose name contains the substring
+	 */
+	Set<Long> findTagsByName(final String substring) {
+		return find(this.tagNames, substring);
+	}
+
+	private Set<Long> find(final TrigramIndex index, final String substring) {
+		ensureBuilt();
+		this.lock.readLock().lock();
+		try {
+			return index.find(substring);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Builds the index from all links and tags on first use
+	 */
+	private void ensureBuilt() {
+		if (this.built) {
+			return;
+		}
+
+		this.lock.writeLock().lock();
+		try (Transaction tx = this.graphDb.beginTx()) {
+			if (this.built) {
+				return;
+			}
+
+			GlobalGraphOperations operations = GlobalGraphOperations.at(this.graphDb);
+			try (ResourceIterator<Node> links = operations.getAllNodesWithLabel(Link.LABEL).iterator()) {
+				while (links.hasNext()) {
+					indexLink(links.next());
+				}
+			}
+			try (ResourceIterator<Node> tags = operations.getAllNodesWithLabel(Tag.LABEL).iterator()) {
+				while (tags.hasNext()) {
+					indexTag(tags.next());
+				}
+			}
+			this.built = true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void linkSaved(final String linkUUID) {
+		// checked under the lock, a running build may have scanned past the
+		// link already
+		this.lock.writeLock().lock();
+		try {
+			if (!this.built) {
+				return; // the build will read the link
+			}
+			indexSavedLink(linkUUID);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private void indexSavedLink(final String linkUUID) {
+		try (Transaction tx = this.graphDb.beginTx();
+				ResourceIterator<Node> links = this.graphDb
+						.findNodesByLabelAndProperty(Link.LABEL, Link.UUID, linkUUID).iterator()) {
+			removeLink(linkUUID);
+			if (links.hasNext()) {
+				indexLink(links.next());
+			}
+		}
+	}
+
+	@Override
+	public void linkDeleted(final String linkUUID) {
+		this.lock.writeLock().lock();
+		try {
+			removeLink(linkUUID);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void tagSaved(final String tagUUID) {
+		this.lock.writeLock().lock();
+		try {
+			if (!this.built) {
+				return; // the build will read the tag
+			}
+			indexSavedTag(tagUUID);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private void indexSavedTag(final String tagUUID) {
+		try (Transaction tx = this.graphDb.beginTx();
+				ResourceIterator<Node> tags = this.graphDb.findNodesByLabelAndProperty(Tag.LABEL, Tag.UUID, tagUUID)
+						.iterator()) {
+			removeTag(tagUUID);
+			if (tags.hasNext()) {
+				indexTag(tags.next());
+			}
+		}
+	}
+
+	@Override
+	public void tagDeleted(final String tagUUID) {
+		this.lock.writeLock().lock();
+		try {
+			removeTag(tagUUID);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private void indexLink(final Node link) {
+		long nodeId = link.getId();
+		this.linkIds.put(String.valueOf(link.getProperty(Link.UUID)), nodeId);
+		this.linkNames.put(nodeId, (String) link.getProperty(Link.NAME, null));
+		this.linkUrls.put(nodeId, (String) link.getProperty(Link.URL, null));
+	}
+
+	private void removeLink(final String linkUUID) {
+		Long nodeId = this.linkIds.remove(linkUUID);
+		if (nodeId != null) {
+			this.linkNames.remove(nodeId);
+			this.linkUrls.remove(nodeId);
+		}
+	}
+
+	private void indexTag(final Node tag) {
+		long nodeId = tag.getId();
+		this.tagIds.put(String.valueOf(tag.getProperty(Tag.UUID)), nodeId);
+		this.tagNames.put(nodeId, (String) tag.getProperty(Tag.NAME, null));
+	}
+
+	private void removeTag(final String tagUUID) {
+		Long nodeId = this.tagIds.remove(tagUUID);
+		if (nodeId != null) {
+			this.tagNames.remove(nodeId);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram posting lists over the values of one node property<br>
+ * A value containing a substring contains all trigrams of the substring, so
+ * intersecting their posting lists yields a small set of candidates which is
+ * then verified against the stored values. Matching is case insensitive.<br>
+ * Not thread safe, the owner has to synchronize access.
+ *
+ * @author mvogel
+ *
+ */
+final class TrigramIndex {
+
+	private static final int GRAM_LENGTH = 3;
+
+	private final Map<Long, String> values = new HashMap<Long, String>();
+	private final Map<String, Set<Long>> postings = new HashMap<String, Set<Long>>();
+
+	/**
+	 * Indexes the value of a node, replacing its previous value
+	 *
+	 * @param nodeId
+	 *            the id of the node
+	 * @param value
+	 *            the value of the property, <code>null</code> removes the node
+	 */
+	void put(final long nodeId, final String value) {
+		remove(nodeId);
+		if (value == null) {
+			return;
+		}
+
+		String normalized = normalize(value);
+		this.values.put(nodeId, normalized);
+		for (String trigram : trigrams(normalized)) {
+			Set<Long> nodeIds = this.postings.get(trigram);
+			if (nodeIds == null) {
+				nodeIds = new HashSet<Long>();
+				this.postings.put(trigram, nodeIds);
+			}
+			nodeIds.add(nodeId);
+		}
+	}
+
+	/**
+	 * Removes a node from the index
+	 *
+	 * @param nodeId
+	 *            the id of the node
+	 */
+	void remove(final long nodeId) {
+		String normalized = this.values.remove(nodeId);
+		if (normalized == null) {
+			return;
+		}
+
+		for (String trigram : trigrams(normalized)) {
+			Set<Long> nodeIds = this.postings.get(trigram);
+			nodeIds.remove(nodeId);
+			if (nodeIds.isEmpty()) {
+				this.postings.remove(trigram);
+			}
+		}
+	}
+
+	/**
+	 * Finds all nodes whose value contains the given substring, ignoring case
+	 *
+	 * @param substring
+	 *            the substring
+	 * @return the ids of the matching nodes
+	 */
+	Set<Long> find(final String substring) {
+		String normalized = normalize(substring);
+		if (normalized.length() < GRAM_LENGTH) {
+			// too short for a trigram -> verify every value
+			return verify(this.values.keySet(), normalized);
+		}
+
+		List<Set<Long>> candidateLists = new ArrayList<Set<Long>>();
+		for (String trigram : trigrams(normalized)) {
+			Set<Long> nodeIds = this.postings.get(trigram);
+			if (nodeIds == null) {
+				return Collections.emptySet();
+			}
+			candidateLists.add(nodeIds);
+		}
+
+		// intersect starting with the shortest list
+		Collections.sort(candidateLists, new Comparator<Set<Long>>() {
+			@Override
+			public int compare(final Set<Long> list1, final Set<Long> list2) {
+				return Integer.compare(list1.size(), list2.size());
+			}
+		});
+		Set<Long> candidates = new HashSet<Long>(candidateLists.get(0));
+		for (int i = 1; i < candidateLists.size() && !candidates.isEmpty(); i++) {
+			candidates.retainAll(candidateLists.get(i));
+		}
+
+		// the trigrams might occur in a different order -> verify
+		return verify(candidates, normalized);
+	}
+
+	private Set<Long> verify(final Set<Long> candidates, final String normalized) {
+		Set<Long> matches = new HashSet<Long>();
+		for (Long nodeId : candidates) {
+			if (this.values.get(nodeId).contains(normalized)) {
+				matches.add(nodeId);
+			}
+		}
+		return matches;
+	}
+
+	private static String normalize(final String value) {
+		return value.toLowerCase(Locale.ENGLISH);
+	}
+
+	private static Set<String> trigrams(final String normalized) {
+		Set<String> trigrams = new HashSet<String>();
+		for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+			trigrams.add(normalized.substring(i, i + GRAM_LENGTH));
+		}
+		return trigrams;
+	}
+}
@@ -4,6 +4,7 @@
 package de.lander.persistence.entities;
 
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.Label;
@@ -28,6 +29,16 @@ public class Link implements Serializable {
     public static final String CLICK_COUNT = "clicks";
     public static final String SCORE = "score";
     public static final String UUID = "uuid";
+    public static final String HOTNESS = "hotness";
+    public static final String HOTNESS_UPDATED = "hotnessUpdated";
+    public static final String HOURLY_CLICKS = "hourlyClicks";
+    public static final String DAILY_CLICKS = "dailyClicks";
+    public static final String NEWEST_CLICK_HOUR = "newestClickHour";
+
+    /**
+     * The time after which the hotness of a click has halved
+     */
+    public static final long HOTNESS_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(7);
 
     private final String name;
     private final String title;
@@ -35,14 +46,23 @@ public class Link implements Serializable {
     private final String uuid;
     private final int clicks;
     private final double score;
+    private final double hotness;
+    private final long hotnessUpdated;
 
     public Link(final String name, final String title, final String url, final int clicks, final double score, final String uuid) {
+        this(name, title, url, clicks, score, uuid, 0, 0);
+    }
+
+    public Link(final String name, final String title, final String url, final int clicks, final double score,
+            final String uuid, final double hotness, final long hotnessUpdated) {
         this.name = name;
         this.title = title;
         this.url = url;
         this.clicks = clicks;
         this.score = score;
 		this.uuid = uuid;
+        this.hotness = hotness;
+        this.hotnessUpdated = hotnessUpdated;
     }
 
     /**
@@ -80,6 +100,47 @@ public class Link implements Serializable {
         return score;
     }
 
+    /**
+     * Returns the recent popularity: every click adds 1, which decays
+     * exponentially with {@link #HOTNESS_HALF_LIFE_MILLIS}
+     * 
+     * @param nowMillis
+     *            the current time
+     * @return the hotness at the given time
+     */
+    public double getHotness(final long nowMillis) {
+        return decayHotness(hotness, hotnessUpdated, nowMillis);
+    }
+
+    /**
+     * Returns a value ordering links like their hotness at any common time,
+     * the logarithm of the hotness decayed back to the epoch
+     * 
+     * @return the rank, negative infinity without clicks
+     */
+    public double getHotnessRank() {
+        if (hotness <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Math.log(hotness) + Math.log(2) * hotnessUpdated / HOTNESS_HALF_LIFE_MILLIS;
+    }
+
+    /**
+     * @param hotness
+     *            the hotness at the time it was updated
+     * @param updatedMillis
+     *            the time of the update
+     * @param nowMillis
+     *            the current time
+     * @return the hotness decayed to the current time
+     */
+    public static double decayHotness(final double hotness, final long updatedMillis, final long nowMillis) {
+        if (hotness == 0 || nowMillis <= updatedMillis) {
+            return hotness;
+        }
+        return hotness * Math.pow(0.5, (double) (nowMillis - updatedMillis) / HOTNESS_HALF_LIFE_MILLIS);
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
@@ -0,0 +1,138 @@
+package de.lander.link.gui.logic;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.Field;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import de.lander.persistence.daos.PersistenceGatewayImpl;
+
+/**
+ * Tests for {@link AdvancedSearch}, wired by hand on an impermanent database
+ *
+ * @author max
+ *
+ */
+public class AdvancedSearchTest {
+
+	private GraphDatabaseService graphDb;
+	private PersistenceGatewayImpl gateway;
+	private LookupExecutor lookupExecutor;
+	private RelevanceModel relevanceModel;
+	private SearchResultCache resultCache;
+	private AdvancedSearch classUnderTest;
+
+	@Before
+	public void wireSearch() {
+		if (PersistenceGatewayImpl.LOGGER == null) {
+			PersistenceGatewayImpl.LOGGER = LogManager.getLogger(PersistenceGatewayImpl.class);
+		}
+		graphDb = new TestGraphDatabaseFactory().newImpermanentDatabase();
+		gateway = new PersistenceGatewayImpl(graphDb);
+
+		lookupExecutor = new LookupExecutor();
+		inject(lookupExecutor, "LOGGER", LogManager.getLogger(LookupExecutor.class));
+		lookupExecutor.start();
+
+		relevanceModel = new RelevanceModel();
+		inject(relevanceModel, "persistenceGatewayImpl", gateway);
+		inject(relevanceModel, "LOGGER", LogManager.getLogger(RelevanceModel.class));
+		relevanceModel.buildStatistics();
+
+		resultCache = new SearchResultCache();
+		inject(resultCache, "persistenceGatewayImpl", gateway);
+		inject(resultCache, "LOGGER", LogManager.getLogger(SearchResultCache.class));
+		resultCache.register();
+
+		classUnderTest = new AdvancedSearch();
+		inject(classUnderTest, "persistenceGatewayImpl", gateway);
+		inject(classUnderTest, "resultCache", resultCache);
+		inject(classUnderTest, "lookupExecutor", lookupExecutor);
+		inject(classUnderTest, "relevanceModel", relevanceModel);
+		inject(classUnderTest, "LOGGER", LogManager.getLogger(AdvancedSearch.class));
+	}
+
+	@After
+	public void shutdown() {
+		lookupExecutor.stop();
+		graphDb.shutdown();
+	}
+
+	@Test
+	public void shouldShowAllLinksForAnEmptySearchText() {
+		// == prepare ==
+		String linkUUID = gateway.addLink("Jenkins", "http://ci.example.com", "Builds");
+		gateway.addLink("Sonar", "http://sonar.example.com", "Quality");
+		gateway.addTagToLink(linkUUID, gateway.addTag("Tools", "Developer tools"));
+
+		// == go ==
+		Set<SearchHit> emptyHits = classUnderTest.performSearch("");
+		Set<SearchHit> blankHits = classUnderTest.performSearch("   ");
+
+		// == verify ==
+		assertEquals(2, emptyHits.size());
+		assertEquals(2, blankHits.size());
+		for (SearchHit hit : emptyHits) {
+			assertThat(hit.getScore(), is(1.0));
+		}
+	}
+
+	@Test
+	public void shouldIgnoreTheWhitespaceAroundTheWords() {
+		// == prepare ==
+		gateway.addLink("Jenkins", "http://ci.example.com", "Builds");
+		gateway.addLink("Sonar", "http://sonar.example.com", "Quality");
+
+		// == go & verify ==
+		assertEquals(1, classUnderTest.performSearch("  Jenkins  ").size());
+		assertEquals(2, classUnderTest.performSearch("Jenkins   Sonar").size());
+	}
+
+	@Test
+	public void shouldRefineLikeTheDelegateWithTheTagsOfThePageOnly() {
+		// == prepare ==
+		String spring = gateway.addLink("Spring", "http://spring.example.com", "Framework");
+		gateway.addLink("Jira", "http://jira.example.com", "Issues");
+		gateway.addLink("Jenkins", "http://jenkins.example.com", "Builds");
+		gateway.addTagToLink(spring, gateway.addTag("Java", "The language"));
+		RefiningSearch refiningSearch = new RefiningSearch(classUnderTest, gateway, relevanceModel, resultCache);
+		refiningSearch.performSearch("j", 0, 10);
+
+		// == go ==
+		SearchResult refined = refiningSearch.performSearch("ja", 0, 10);
+		SearchResult searched = classUnderTest.performSearch("ja", 0, 10);
+
+		// == verify ==
+		assertThat(refined.getTotalHits(), is(2));
+		assertThat(refined.getTotalHits(), is(searched.getTotalHits()));
+		for (int i = 0; i < refined.getHits().size(); i++) {
+			SearchHit hit = refined.getHits().get(i);
+			assertThat(hit.getLink().getUuid(), is(searched.getHits().get(i).getLink().getUuid()));
+			assertThat(hit.getScore(), closeTo(searched.getHits().get(i).getScore(), 1e-9));
+			assertThat(hit.getTags().size(), is(searched.getHits().get(i).getTags().size()));
+		}
+	}
+
+	/**
+	 * Sets an injected field, as the container would
+	 */
+	private static void inject(Object bean, String fieldName, Object value) {
+		try {
+			Field field = bean.getClass().getDeclaredField(fieldName);
+			field.setAccessible(true);
+			field.set(bean, value);
+		} catch (NoSuchFieldException | IllegalAccessException e) {
+			throw new IllegalStateException("Cannot inject " + fieldName + " into " + bean, e);
+		}
+	}
+}
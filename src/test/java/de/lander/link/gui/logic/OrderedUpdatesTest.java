@@ -0,0 +1,86 @@
+package de.lander.link.gui.logic;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link OrderedUpdates}
+ *
+ * @author max
+ *
+ */
+public class OrderedUpdatesTest {
+
+	private final OrderedUpdates classUnderTest = new OrderedUpdates(new ReentrantLock());
+	private String indexed = "none";
+
+	@Test
+	public void shouldNotApplyAnOlderReadAfterANewerOne() throws Exception {
+		// == prepare ==
+		CountDownLatch olderRead = new CountDownLatch(1);
+		CountDownLatch newerApplied = new CountDownLatch(1);
+		Thread older = new Thread(() -> classUnderTest.apply("uuid", () -> {
+			olderRead.countDown();
+			await(newerApplied);
+			return () -> indexed = "old";
+		}));
+
+		// == go ==
+		older.start();
+		await(olderRead);
+		classUnderTest.apply("uuid", () -> () -> indexed = "new");
+		newerApplied.countDown();
+		older.join();
+
+		// == verify ==
+		assertThat(indexed, is("new"));
+	}
+
+	@Test
+	public void shouldApplyAnOlderCompleteChangeAfterANewerPartialOne() throws Exception {
+		// == prepare ==
+		CountDownLatch olderRead = new CountDownLatch(1);
+		CountDownLatch newerApplied = new CountDownLatch(1);
+		Thread older = new Thread(() -> classUnderTest.apply("uuid", () -> {
+			olderRead.countDown();
+			await(newerApplied);
+			return () -> indexed = "saved";
+		}));
+
+		// == go ==
+		older.start();
+		await(olderRead);
+		classUnderTest.applyPartial("uuid", () -> () -> indexed = "clicked");
+		newerApplied.countDown();
+		older.join();
+
+		// == verify ==
+		assertThat(indexed, is("saved"));
+	}
+
+	@Test
+	public void shouldApplyChangesOfOtherUuidsAndLaterChanges() {
+		// == go & verify ==
+		classUnderTest.apply("uuid", () -> () -> indexed = "first");
+		assertThat(indexed, is("first"));
+		classUnderTest.apply("other", () -> () -> indexed = "other");
+		assertThat(indexed, is("other"));
+		classUnderTest.apply("uuid", () -> () -> indexed = "second");
+		assertThat(indexed, is("second"));
+		classUnderTest.apply("uuid", () -> null);
+		assertThat(indexed, is("second"));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package de.lander.link.gui.logic;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lander.persistence.daos.BenchmarkDatabase;
+import de.lander.persistence.daos.PersistenceGateway;
+
+/**
+ * Benchmarks the {@link DefaultSearch} and the {@link AdvancedSearch} on a
+ * {@link BenchmarkDatabase}<br>
+ * The beans are wired by hand like the container would, with a
+ * {@link SearchResultCache} of <code>resultCacheSize</code> results; a size of
+ * 0 searches the database every time. Run with the <code>benchmarks</code>
+ * profile or <code>main</code>, both report throughput, average time and the
+ * allocation rate per operation.<br>
+ * The typo expansion is benchmarked on its own on a {@link TermDictionary}
+ * of a million terms, sampled for the percentiles of a single expansion.
+ *
+ * @author max
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class SearchBenchmark {
+
+	/** The number of different search texts */
+	private static final int SEARCH_TEXTS = 64;
+	/** The rows of the first page of the result table */
+	private static final int PAGE_SIZE = 50;
+
+	@Param({ "1000", "10000" })
+	private int linkCount;
+
+	@Param({ "200" })
+	private int tagCount;
+
+	@Param({ "20000" })
+	private int taggingCount;
+
+	@Param({ "0", "1000" })
+	private int resultCacheSize;
+
+	private BenchmarkDatabase database;
+	private LookupExecutor lookupExecutor;
+	private RelevanceModel relevanceModel;
+	private SearchResultCache resultCache;
+	private DefaultSearch defaultSearch;
+	private AdvancedSearch advancedSearch;
+
+	/** One word texts */
+	private final String[] words = new String[SEARCH_TEXTS];
+	/** Two word texts */
+	private final String[] phrases = new String[SEARCH_TEXTS];
+
+	/**
+	 * Walks through the search texts, separately for every thread
+	 */
+	@State(Scope.Thread)
+	public static class Position {
+		private int next;
+
+		int next() {
+			return this.next++ % SEARCH_TEXTS;
+		}
+	}
+
+	/**
+	 * A dictionary of a million random terms and mistyped tokens of them
+	 */
+	@State(Scope.Benchmark)
+	public static class MillionTerms {
+		private static final int TERMS = 1000000;
+
+		private final TermDictionary dictionary = new TermDictionary();
+		private final String[] typos = new String[SEARCH_TEXTS];
+
+		@Setup
+		public void fill() {
+			Random random = new Random(42);
+			List<String> terms = new ArrayList<String>(TERMS);
+			while (dictionary.size() < TERMS) {
+				char[] term = new char[4 + random.nextInt(9)];
+				for (int i = 0; i < term.length; i++) {
+					term[i] = (char) ('a' + random.nextInt(26));
+				}
+				String added = new String(term);
+				dictionary.add(Collections.singleton(added));
+				terms.add(added);
+			}
+			for (int i = 0; i < SEARCH_TEXTS; i++) {
+				// replaces a character after the prefix kept by the expansion
+				char[] typo = terms.get(random.nextInt(terms.size())).toCharArray();
+				typo[2 + random.nextInt(typo.length - 2)] = (char) ('a' + random.nextInt(26));
+				typos[i] = new String(typo);
+			}
+		}
+
+		Map<String, Integer> expand(int index) {
+			String typo = typos[index];
+			// like the RelevanceModel, two edits for long tokens
+			return dictionary.expand(typo, typo.length() < 8 ? 1 : 2, 3);
+		}
+	}
+
+	@Setup
+	public void wireSearches() {
+		this.database = new BenchmarkDatabase(this.linkCount, this.tagCount, this.taggingCount);
+		PersistenceGateway gateway = this.database.getGateway();
+		for (int i = 0; i < SEARCH_TEXTS; i++) {
+			this.words[i] = this.database.getWord(i);
+			this.phrases[i] = this.database.getWord(i) + " " + this.database.getWord(SEARCH_TEXTS + i);
+		}
+
+		this.lookupExecutor = new LookupExecutor();
+		inject(this.lookupExecutor, "LOGGER", LogManager.getLogger(LookupExecutor.class));
+		this.lookupExecutor.start();
+
+		this.relevanceModel = new RelevanceModel();
+		inject(this.relevanceModel, "persistenceGatewayImpl", gateway);
+		inject(this.relevanceModel, "LOGGER", LogManager.getLogger(RelevanceModel.class));
+		this.relevanceModel.buildStatistics();
+
+		// the cache reads its size on construction
+		System.setProperty(SearchResultCache.MAX_SIZE_PROPERTY, String.valueOf(this.resultCacheSize));
+		this.resultCache = new SearchResultCache();
+		System.clearProperty(SearchResultCache.MAX_SIZE_PROPERTY);
+		inject(this.resultCache, "persistenceGatewayImpl", gateway);
+		inject(this.resultCache, "LOGGER", LogManager.getLogger(SearchResultCache.class));
+		this.resultCache.register();
+
+		this.defaultSearch = new DefaultSearch();
+		inject(this.defaultSearch, "persistenceGatewayImpl", gateway);
+
+		this.advancedSearch = new AdvancedSearch();
+		inject(this.advancedSearch, "persistenceGatewayImpl", gateway);
+		inject(this.advancedSearch, "resultCache", this.resultCache);
+		inject(this.advancedSearch, "lookupExecutor", this.lookupExecutor);
+		inject(this.advancedSearch, "relevanceModel", this.relevanceModel);
+		inject(this.advancedSearch, "LOGGER", LogManager.getLogger(AdvancedSearch.class));
+	}
+
+	@TearDown
+	public void shutdown() {
+		this.resultCache.close();
+		this.relevanceModel.close();
+		this.lookupExecutor.stop();
+		this.database.shutdown();
+	}
+
+	@Benchmark
+	public Set<SearchHit> defaultSearch(final Position position) {
+		return this.defaultSearch.performSearch(this.words[position.next()]);
+	}
+
+	@Benchmark
+	public Set<SearchHit> advancedSearch(final Position position) {
+		return this.advancedSearch.performSearch(this.words[position.next()]);
+	}
+
+	@Benchmark
+	public Set<SearchHit> advancedSearchTwoWords(final Position position) {
+		return this.advancedSearch.performSearch(this.phrases[position.next()]);
+	}
+
+	@Benchmark
+	public SearchResult advancedSearchFirstPage(final Position position) {
+		return this.advancedSearch.performSearch(this.phrases[position.next()], 0, PAGE_SIZE);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Map<String, Integer> expandInMillionTerms(final MillionTerms terms, final Position position) {
+		return terms.expand(position.next());
+	}
+
+	/**
+	 * Sets an injected field, as the container would
+	 */
+	private static void inject(final Object bean, final String fieldName, final Object value) {
+		for (Class<?> type = bean.getClass(); type != null; type = type.getSuperclass()) {
+			try {
+				Field field = type.getDeclaredField(fieldName);
+				field.setAccessible(true);
+				field.set(bean, value);
+				return;
+			} catch (NoSuchFieldException e) {
+				// declared by a super class
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Cannot inject " + fieldName + " into " + bean, e);
+			}
+		}
+		throw new IllegalArgumentException("no field " + fieldName + " in " + bean.getClass());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SearchBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,131 @@
+package de.lander.link.gui.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lander.persistence.entities.Link;
+
+/**
+ * Compares ordering hits by the precomputed sort keys of {@link HitOrder}
+ * with ordering them by comparing scores, hotness, clicks and names on every
+ * comparison, as {@link SearchHitComparator} did before the sort keys<br>
+ * Run <code>main</code> from the test classpath, the GC profiler reports the
+ * allocation rate per operation.
+ *
+ * @author max
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SearchHitOrderBenchmark {
+
+	@Param({ "1000", "100000" })
+	private int hitCount;
+
+	/** The first page of the result table, or all hits */
+	@Param({ "50", "100000" })
+	private int limit;
+
+	private List<SearchHit> hits;
+
+	@Setup
+	public void createHits() {
+		// few distinct scores and names, so the tie breakers are compared often
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		this.hits = new ArrayList<SearchHit>(this.hitCount);
+		for (int i = 0; i < this.hitCount; i++) {
+			Link link = new Link("Link " + random.nextInt(this.hitCount / 10 + 1), "", "http://link/" + i,
+					random.nextInt(20), 0, "uuid-" + i, random.nextInt(5), now - random.nextInt(1000000));
+			this.hits.add(new SearchHit(link, random.nextInt(8) * 0.5));
+		}
+	}
+
+	@Benchmark
+	public List<SearchHit> comparingFields() {
+		Comparator<SearchHit> order = new FieldComparator();
+		PriorityQueue<SearchHit> worstFirst = new PriorityQueue<SearchHit>(this.limit + 1, order.reversed());
+		for (SearchHit hit : this.hits) {
+			if (worstFirst.size() < this.limit) {
+				worstFirst.offer(hit);
+			} else if (order.compare(hit, worstFirst.peek()) < 0) {
+				worstFirst.poll();
+				worstFirst.offer(hit);
+			}
+		}
+		List<SearchHit> best = new ArrayList<SearchHit>(worstFirst);
+		Collections.sort(best, order);
+		return best;
+	}
+
+	@Benchmark
+	public List<SearchHit> comparingSortKeys() {
+		List<SearchHit> sorted = new ArrayList<SearchHit>(this.hits);
+		Collections.sort(sorted, SearchHitComparator.get());
+		return sorted.subList(0, Math.min(this.limit, sorted.size()));
+	}
+
+	@Benchmark
+	public List<SearchHit> selectingPrimitiveKeys() {
+		return TopHits.select(this.hits, this.limit);
+	}
+
+	/**
+	 * The order without sort keys
+	 */
+	private static final class FieldComparator implements Comparator<SearchHit> {
+
+		private final long now = System.currentTimeMillis();
+
+		@Override
+		public int compare(SearchHit h1, SearchHit h2) {
+			int scoreCompare = Double.compare(h2.getScore(), h1.getScore());
+			if (scoreCompare != 0) {
+				return scoreCompare;
+			}
+			int hotnessCompare = Double.compare(h2.getLink().getHotness(this.now), h1.getLink().getHotness(this.now));
+			if (hotnessCompare != 0) {
+				return hotnessCompare;
+			}
+			int clickCompare = Integer.compare(h2.getLink().getClicks(), h1.getLink().getClicks());
+			if (clickCompare != 0) {
+				return clickCompare;
+			}
+			int nameCompare = h2.getLink().getName().compareTo(h1.getLink().getName());
+			if (nameCompare != 0) {
+				return nameCompare;
+			}
+			return h2.getLink().getUuid().compareTo(h1.getLink().getUuid());
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SearchHitOrderBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,120 @@
+package de.lander.link.gui.logic;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the typo expansion of the {@link TermDictionary}
+ *
+ * @author max
+ *
+ */
+public class TermDictionaryTest {
+
+	private final TermDictionary classUnderTest = new TermDictionary();
+
+	@Test
+	public void shouldExpandMistypedTokens() {
+		// == prepare ==
+		addTerms("grafana", "jenkins", "jira", "graphite", "sonar");
+
+		// == go ==
+		Map<String, Integer> graphana = classUnderTest.expand("graphana", 2, 3);
+		Map<String, Integer> jenkns = classUnderTest.expand("jenkns", 1, 3);
+
+		// == verify ==
+		assertEquals(Collections.singletonMap("grafana", 2), graphana);
+		assertEquals(Collections.singletonMap("jenkins", 1), jenkns);
+	}
+
+	@Test
+	public void shouldKeepOneCharacterFixedPerEdit() {
+		// == prepare ==
+		addTerms("henkins", "jenkinz", "grafana", "krafana", "gdafana");
+
+		// == go & verify ==
+		// the first character of the token is never edited with one edit
+		assertEquals(Collections.singletonMap("jenkinz", 1), classUnderTest.expand("jenkins", 1, 10));
+		// the first two characters are never edited with two edits
+		assertEquals(Collections.singletonMap("grafana", 1), classUnderTest.expand("grafanx", 2, 10));
+	}
+
+	@Test
+	public void shouldNotExpandToTermsContainingTheToken() {
+		// == prepare ==
+		addTerms("jenkinsx", "jenkins", "jenkin");
+
+		// == go ==
+		Map<String, Integer> expansions = classUnderTest.expand("jenkins", 1, 10);
+
+		// == verify ==
+		assertEquals(Collections.singletonMap("jenkin", 1), expansions);
+	}
+
+	@Test
+	public void shouldSkipDeadPrefixesWithoutLosingLaterTerms() {
+		// == prepare ==
+		addTerms("jaaaa", "jaaab", "jaaac", "jbbbbbbbbbbbbbbbbbbbbbb", "jenkinz", "jzzzz");
+
+		// == go ==
+		Map<String, Integer> expansions = classUnderTest.expand("jenkins", 1, 10);
+
+		// == verify ==
+		assertEquals(Collections.singletonMap("jenkinz", 1), expansions);
+	}
+
+	@Test
+	public void shouldReturnTheNearestAndMostFrequentTermsUpToTheLimit() {
+		// == prepare ==
+		addTerms("grofena", "grofena", "grofena", "grofena", "grofena");
+		addTerms("grafona", "grafona", "grafona");
+		addTerms("grafena", "grafena");
+		addTerms("grafane");
+
+		// == go ==
+		Map<String, Integer> limited = classUnderTest.expand("grafana", 2, 3);
+		Map<String, Integer> all = classUnderTest.expand("grafana", 2, 10);
+
+		// == verify ==
+		assertEquals(Arrays.asList("grafona", "grafena", "grafane"), new ArrayList<String>(limited.keySet()));
+		assertEquals(Arrays.asList("grafona", "grafena", "grafane", "grofena"), new ArrayList<String>(all.keySet()));
+		assertThat(all.get("grofena"), is(2));
+		for (String term : limited.keySet()) {
+			assertThat(limited.get(term), is(1));
+		}
+	}
+
+	@Test
+	public void shouldForgetRemovedTerms() {
+		// == prepare ==
+		addTerms("jenkinz", "jenkinz");
+
+		// == go ==
+		classUnderTest.remove(Collections.singleton("jenkinz"));
+		Map<String, Integer> onceRemoved = classUnderTest.expand("jenkins", 1, 10);
+		classUnderTest.remove(Collections.singleton("jenkinz"));
+
+		// == verify ==
+		assertEquals(Collections.singletonMap("jenkinz", 1), onceRemoved);
+		assertTrue(classUnderTest.expand("jenkins", 1, 10).isEmpty());
+		assertThat(classUnderTest.size(), is(0));
+	}
+
+	/**
+	 * Adds every term as a document of its own
+	 */
+	private void addTerms(String... terms) {
+		for (String term : terms) {
+			classUnderTest.add(Collections.singleton(term));
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package de.lander.link.gui.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.lander.persistence.entities.Link;
+
+/**
+ * Tests that {@link TopHits} selects the hits in the order of the field
+ * comparison the precomputed sort keys replaced
+ *
+ * @author max
+ *
+ */
+public class TopHitsTest {
+
+	private static final long NOW_MILLIS = System.currentTimeMillis();
+	private static final double[] SCORES = { 0, 0.5, 1, 2.5 };
+	private static final double[] HOTNESSES = { 0, 1, 3 };
+	private static final long[] HOTNESS_UPDATES = { NOW_MILLIS - TimeUnit.DAYS.toMillis(1),
+			NOW_MILLIS - TimeUnit.DAYS.toMillis(10) };
+	/** Names sharing the first four characters, shorter ones and others */
+	private static final String[] NAMES = { "grafana", "grafana dev", "grafite", "graf", "gra", "gr", "g", "",
+			"jenkins", "jenk", "Jenkins", "jira", "\u00e4rger", "graf\u00e4", "\u9f99grafana" };
+
+	/** The comparison of the fields before the sort keys were introduced */
+	private static final Comparator<SearchHit> FIELD_ORDER = (h1, h2) -> {
+		int scoreCompare = Double.compare(h2.getScore(), h1.getScore());
+		if (scoreCompare != 0) {
+			return scoreCompare;
+		}
+		int hotnessCompare = Double.compare(h2.getLink().getHotness(NOW_MILLIS),
+				h1.getLink().getHotness(NOW_MILLIS));
+		if (hotnessCompare != 0) {
+			return hotnessCompare;
+		}
+		int clickCompare = h2.getLink().getClicks() - h1.getLink().getClicks();
+		if (clickCompare != 0) {
+			return clickCompare;
+		}
+		int nameCompare = h2.getLink().getName().compareTo(h1.getLink().getName());
+		if (nameCompare != 0) {
+			return nameCompare;
+		}
+		return h2.getLink().getUuid().compareTo(h1.getLink().getUuid());
+	};
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void shouldSelectInTheOrderOfTheFieldComparison() {
+		for (int round = 0; round < 200; round++) {
+			// == prepare ==
+			List<SearchHit> hits = randomHits(1 + random.nextInt(200));
+			List<SearchHit> expected = new ArrayList<SearchHit>(hits);
+			Collections.sort(expected, FIELD_ORDER);
+			int limit = 1 + random.nextInt(hits.size());
+
+			// == go ==
+			List<SearchHit> all = TopHits.select(hits, hits.size());
+			List<SearchHit> best = TopHits.select(hits, limit);
+
+			// == verify ==
+			assertEquals(expected, all);
+			assertEquals(expected.subList(0, limit), best);
+		}
+	}
+
+	@Test
+	public void shouldSortInTheOrderOfTheFieldComparison() {
+		// == prepare ==
+		List<SearchHit> hits = randomHits(1000);
+		List<SearchHit> expected = new ArrayList<SearchHit>(hits);
+		Collections.sort(expected, FIELD_ORDER);
+
+		// == go ==
+		Collections.sort(hits, SearchHitComparator.get());
+
+		// == verify ==
+		assertEquals(expected, hits);
+	}
+
+	@Test
+	public void shouldOrderNamesByTheirFullLength() {
+		// == prepare ==
+		// equal scores, no hotness and no clicks, only the names differ
+		List<SearchHit> hits = new ArrayList<SearchHit>();
+		for (int i = 0; i < NAMES.length; i++) {
+			hits.add(new SearchHit(new Link(NAMES[i], "title", "http://example.org", 0, 0, "uuid" + i), 1));
+		}
+		List<SearchHit> expected = new ArrayList<SearchHit>(hits);
+		Collections.sort(expected, FIELD_ORDER);
+		Collections.reverse(hits);
+
+		// == go ==
+		List<SearchHit> selected = TopHits.select(hits, hits.size());
+
+		// == verify ==
+		assertEquals(expected, selected);
+	}
+
+	/**
+	 * Few distinct values per field, so many hits tie on the first fields
+	 */
+	private List<SearchHit> randomHits(int count) {
+		List<SearchHit> hits = new ArrayList<SearchHit>();
+		for (int i = 0; i < count; i++) {
+			String name = NAMES[random.nextInt(NAMES.length)];
+			Link link = new Link(name, "title", "http://example.org/" + i, random.nextInt(3), 0, "uuid" + i,
+					HOTNESSES[random.nextInt(HOTNESSES.length)],
+					HOTNESS_UPDATES[random.nextInt(HOTNESS_UPDATES.length)]);
+			hits.add(new SearchHit(link, SCORES[random.nextInt(SCORES.length)]));
+		}
+		return hits;
+	}
+}
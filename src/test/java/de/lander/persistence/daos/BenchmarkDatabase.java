@@ -0,0 +1,189 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+/**
+ * An impermanent database seeded with generated links and tags for the JMH
+ * benchmarks<br>
+ * Link names, titles, urls and tag names are made of a fixed vocabulary, so
+ * every word of {@link #getWord(int)} finds links and tags. The same counts
+ * always create the same data.
+ *
+ * @author mvogel
+ *
+ */
+public final class BenchmarkDatabase {
+
+	private static final long SEED = 42;
+	private static final int VOCABULARY_SIZE = 500;
+	/** The number of changes committed per batch while seeding */
+	private static final int CHUNK_SIZE = 1000;
+
+	private final GraphDatabaseService graphDb;
+	private final PersistenceGatewayImpl gateway;
+	private final List<String> vocabulary;
+	private final List<String> linkUUIDs = new ArrayList<String>();
+	private final List<String> tagNames = new ArrayList<String>();
+
+	/**
+	 * Creates and seeds the database
+	 *
+	 * @param linkCount
+	 *            the number of links
+	 * @param tagCount
+	 *            the number of tags
+	 * @param taggingCount
+	 *            the number of distinct tag to link relationships, at most
+	 *            links times tags
+	 */
+	public BenchmarkDatabase(final int linkCount, final int tagCount, final int taggingCount) {
+		Validate.isTrue(linkCount > 0, "the link count must be positive");
+		Validate.isTrue(tagCount > 0, "the tag count must be positive");
+		Validate.isTrue(taggingCount >= 0 && taggingCount <= (long) linkCount * tagCount,
+				"the tagging count must be between 0 and links times tags");
+
+		if (PersistenceGatewayImpl.LOGGER == null) {
+			PersistenceGatewayImpl.LOGGER = LogManager.getLogger(PersistenceGatewayImpl.class);
+		}
+		this.graphDb = new TestGraphDatabaseFactory().newImpermanentDatabase();
+		this.gateway = new PersistenceGatewayImpl(this.graphDb);
+		this.gateway.createIndexesAndConstraints();
+
+		Random random = new Random(SEED);
+		this.vocabulary = createVocabulary(random);
+		List<String> tagUUIDs = seedTags(tagCount);
+		seedLinks(random, linkCount);
+		seedTaggings(random, tagUUIDs, taggingCount);
+		PersistenceGatewayImpl.LOGGER.info("Seeded {} links, {} tags and {} taggings", new Object[] { linkCount,
+				tagCount, taggingCount });
+	}
+
+	/**
+	 * @return the gateway of the seeded database
+	 */
+	public PersistenceGatewayImpl getGateway() {
+		return this.gateway;
+	}
+
+	/**
+	 * @return the seeded database
+	 */
+	public GraphDatabaseService getGraphDb() {
+		return this.graphDb;
+	}
+
+	/**
+	 * @param index
+	 *            any non negative number
+	 * @return a word of the vocabulary, contained in link and tag names
+	 */
+	public String getWord(final int index) {
+		return this.vocabulary.get(index % this.vocabulary.size());
+	}
+
+	/**
+	 * @param index
+	 *            any non negative number
+	 * @return the uuid of a seeded link
+	 */
+	public String getLinkUUID(final int index) {
+		return this.linkUUIDs.get(index % this.linkUUIDs.size());
+	}
+
+	/**
+	 * @param index
+	 *            any non negative number
+	 * @return the name of a seeded tag
+	 */
+	public String getTagName(final int index) {
+		return this.tagNames.get(index % this.tagNames.size());
+	}
+
+	/**
+	 * Shuts the database down, flushing the counted clicks
+	 */
+	public void shutdown() {
+		this.graphDb.shutdown();
+	}
+
+	// /////////////
+	// SEEDING
+	// /////////////
+
+	private static List<String> createVocabulary(final Random random) {
+		Set<String> words = new LinkedHashSet<String>();
+		while (words.size() < VOCABULARY_SIZE) {
+			char[] word = new char[4 + random.nextInt(6)];
+			for (int i = 0; i < word.length; i++) {
+				word[i] = (char) ('a' + random.nextInt(26));
+			}
+			words.add(new String(word));
+		}
+		return new ArrayList<String>(words);
+	}
+
+	private List<String> seedTags(final int tagCount) {
+		List<String> tagUUIDs = new ArrayList<String>();
+		Batch batch = this.gateway.batch();
+		for (int i = 0; i < tagCount; i++) {
+			// unique names, the first round are the plain words
+			String name = i < VOCABULARY_SIZE ? getWord(i) : getWord(i) + (i / VOCABULARY_SIZE);
+			tagUUIDs.add(batch.addTag(name, "tag " + i));
+			this.tagNames.add(name);
+			batch = commitFullChunk(batch, i);
+		}
+		batch.commit();
+		return tagUUIDs;
+	}
+
+	private void seedLinks(final Random random, final int linkCount) {
+		Batch batch = this.gateway.batch();
+		for (int i = 0; i < linkCount; i++) {
+			String name = randomWord(random) + " " + randomWord(random);
+			String title = randomWord(random) + " " + randomWord(random) + " " + randomWord(random);
+			String url = "http://" + randomWord(random) + ".example.org/" + i;
+			this.linkUUIDs.add(batch.addLink(name, url, title));
+			batch = commitFullChunk(batch, i);
+		}
+		batch.commit();
+	}
+
+	private void seedTaggings(final Random random, final List<String> tagUUIDs, final int taggingCount) {
+		Set<Long> taggings = new HashSet<Long>();
+		Batch batch = this.gateway.batch();
+		while (taggings.size() < taggingCount) {
+			int link = random.nextInt(this.linkUUIDs.size());
+			int tag = random.nextInt(tagUUIDs.size());
+			if (taggings.add((long) link * tagUUIDs.size() + tag)) {
+				batch.addTagToLink(this.linkUUIDs.get(link), tagUUIDs.get(tag));
+				batch = commitFullChunk(batch, taggings.size() - 1);
+			}
+		}
+		batch.commit();
+	}
+
+	private Batch commitFullChunk(final Batch batch, final int index) {
+		if ((index + 1) % CHUNK_SIZE != 0) {
+			return batch;
+		}
+		batch.commit();
+		return this.gateway.batch();
+	}
+
+	private String randomWord(final Random random) {
+		return getWord(random.nextInt(VOCABULARY_SIZE));
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lander.persistence.entities.Link;
+
+/**
+ * Benchmarks a complete {@link BulkExporter} export and paging through
+ * {@link PersistenceGatewayImpl#getAllLinks(int, String)} on a
+ * {@link BenchmarkDatabase}<br>
+ * Both read the links in chunks after a node id cursor, the time per link
+ * count doubling should double as well, not quadruple.
+ *
+ * @author mvogel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class BulkExportBenchmark {
+
+	private static final int CHUNK_SIZE = 100;
+
+	@Param({ "10000", "20000", "40000" })
+	private int linkCount;
+
+	private BenchmarkDatabase database;
+
+	@Setup
+	public void seed() {
+		this.database = new BenchmarkDatabase(this.linkCount, 200, this.linkCount);
+	}
+
+	@TearDown
+	public void shutdown() {
+		this.database.shutdown();
+	}
+
+	@Benchmark
+	public long exportAll() throws IOException {
+		CountingWriter output = new CountingWriter();
+		new BulkExporter(this.database.getGraphDb(), CHUNK_SIZE).exportLinks(output, BulkExporter.START);
+		return output.count;
+	}
+
+	@Benchmark
+	public int pageAllLinks() {
+		int links = 0;
+		String cursor = null;
+		do {
+			Page<Link> page = this.database.getGateway().getAllLinks(CHUNK_SIZE, cursor);
+			links += page.getItems().size();
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return links;
+	}
+
+	/**
+	 * Discards the export, counting the chars only
+	 */
+	private static final class CountingWriter extends Writer {
+		private long count;
+
+		@Override
+		public void write(final char[] buffer, final int offset, final int length) {
+			this.count += length;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(BulkExportBenchmark.class.getSimpleName()).build()).run();
+	}
+}
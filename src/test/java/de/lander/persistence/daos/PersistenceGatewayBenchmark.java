@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package de.lander.persistence.daos;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lander.persistence.entities.Link;
+import de.lander.persistence.entities.Tag;
+
+/**
+ * Benchmarks the lookups of the {@link PersistenceGatewayImpl} used by every
+ * search and the click counting, on a {@link BenchmarkDatabase}<br>
+ * Run with the <code>benchmarks</code> profile or <code>main</code>, both
+ * report throughput, average time and the allocation rate per operation.
+ *
+ * @author mvogel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class PersistenceGatewayBenchmark {
+
+	@Param({ "1000", "10000" })
+	private int linkCount;
+
+	@Param({ "200" })
+	private int tagCount;
+
+	@Param({ "20000" })
+	private int taggingCount;
+
+	private BenchmarkDatabase database;
+	private PersistenceGatewayImpl gateway;
+
+	/**
+	 * Walks through the words and links, separately for every thread
+	 */
+	@State(Scope.Thread)
+	public static class Position {
+		private int next;
+
+		int next() {
+			return this.next++ & Integer.MAX_VALUE;
+		}
+	}
+
+	@Setup
+	public void seed() {
+		this.database = new BenchmarkDatabase(this.linkCount, this.tagCount, this.taggingCount);
+		this.gateway = this.database.getGateway();
+	}
+
+	@TearDown
+	public void shutdown() {
+		this.database.shutdown();
+	}
+
+	@Benchmark
+	public List<Link> searchLinks(final Position position) {
+		return this.gateway.searchLinks(this.database.getWord(position.next()));
+	}
+
+	@Benchmark
+	public Map<Tag, Set<Link>> searchLinksForTagName(final Position position) {
+		return this.gateway.searchLinksForTagName(this.database.getWord(position.next()));
+	}
+
+	@Benchmark
+	public List<Tag> getTagsForLink(final Position position) {
+		return this.gateway.getTagsForLink(this.database.getLinkUUID(position.next()));
+	}
+
+	@Benchmark
+	public void incrementLinkClick(final Position position) {
+		this.gateway.incrementLinkClick(this.database.getLinkUUID(position.next()));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PersistenceGatewayBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -5,10 +5,16 @@ package de.lander.persistence.daos;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -22,6 +28,8 @@ import org.jboss.shrinkwrap.api.asset.EmptyAsset;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
 
 import de.lander.link.util.DatabaseFactoryForTests;
 import de.lander.link.util.LoggerFactory;
@@ -48,6 +56,11 @@ public class PersistenceGatewayImplTest {
 	public static JavaArchive createDeployment() {
 		return ShrinkWrap.create(JavaArchive.class).addClass(Relationships.class).addClass(Link.class)
 				.addClass(Tag.class).addClass(PersistenceGateway.class).addClass(PersistenceGatewayImpl.class)
+				.addClass(StatementRegistry.class).addClass(NodeIdCache.class).addClass(GatewayResources.class)
+				.addClass(PersistenceListener.class).addClass(TrigramIndex.class).addClass(SubstringIndex.class)
+				.addClass(ClickCounter.class).addClass(Batch.class).addClass(BulkImporter.class)
+				.addClass(BulkExporter.class).addClass(NodeScan.class).addClass(Page.class)
+				.addClass(EntityCache.class).addClass(CacheStatistics.class).addClass(ClickHistory.class)
 				.addClass(LoggerFactory.class).addClass(DatabaseFactoryForTests.class)
 
 				.addPackages(true, "org.apache.deltaspike.core.impl") // For
@@ -449,6 +462,7 @@ public class PersistenceGatewayImplTest {
 
 		// == go ==
 		this.classUnderTest.incrementTagClick(name);
+		this.classUnderTest.flushClicks();
 
 		// == verify ==
 		List<Tag> resultLinks = this.classUnderTest.searchTags(TagProperty.NAME, name);
@@ -511,6 +525,453 @@ public class PersistenceGatewayImplTest {
 
 	}
 
+	@Test
+	public void shouldReuseTheStatementForDifferentParameters() {
+		// == prepare ==
+		String reillyUUID = this.classUnderTest.addLink("O'Reilly", "http://oreilly.com", "O'Reilly Media");
+		String linuxUUID = this.classUnderTest.addLink("Linux-Magazin", "http://linux-magazin.com", "my linux magazin");
+		String tagUUID = this.classUnderTest.addTag("Magazines", "print and online");
+		StatementRegistry statements = this.classUnderTest.getStatementRegistry();
+
+		// == go ==
+		this.classUnderTest.addTagToLink(reillyUUID, tagUUID);
+		int statementsAfterFirst = statements.getStatementCount();
+		long reusesAfterFirst = statements.getReuses();
+		this.classUnderTest.addTagToLink(linuxUUID, tagUUID);
+
+		// == verify ==
+		assertEquals(1, this.classUnderTest.getTagsForLink(reillyUUID).size());
+		assertEquals(1, this.classUnderTest.getTagsForLink(linuxUUID).size());
+		// the second tagging runs the same template with other parameters
+		assertEquals(statementsAfterFirst, statements.getStatementCount());
+		assertEquals(reusesAfterFirst + 1, statements.getReuses());
+	}
+
+	@Test
+	public void shouldReadAndForgetLinkByUUID() {
+		// == prepare ==
+		String linkUUID = this.classUnderTest.addLink("Neo4j-Tutorial", "http://neo4j.com", "Neo4j-Tutorial-Title");
+
+		// == go ==
+		this.classUnderTest.setLinkPropertyValue(linkUUID, Link.NAME, "Neo4j-Manual");
+		Link link = this.classUnderTest.getLinkByUUID(linkUUID);
+		this.classUnderTest.deleteLink(linkUUID);
+
+		// == verify ==
+		assertThat(link.getName(), is("Neo4j-Manual"));
+		assertThat(link.getUuid(), is(linkUUID));
+		assertNull(this.classUnderTest.getLinkByUUID(linkUUID));
+	}
+
+	@Test
+	public void shouldLoadTagsForSeveralLinksAtOnce() {
+		// == prepare ==
+		String tagUUID1 = this.classUnderTest.addTag("Tag1", "description1");
+		String tagUUID2 = this.classUnderTest.addTag("Tag2", "description2");
+		String linkUUID1 = this.classUnderTest.addLink("MyLink1", "http://link1.com", "MyLink1-Title");
+		String linkUUID2 = this.classUnderTest.addLink("MyLink2", "http://link2.com", "MyLink2-Title");
+		String linkUUID3 = this.classUnderTest.addLink("MyLink3", "http://link3.com", "MyLink3-Title");
+		this.classUnderTest.addTagToLink(linkUUID1, tagUUID1);
+		this.classUnderTest.addTagToLink(linkUUID1, tagUUID2);
+		this.classUnderTest.addTagToLink(linkUUID2, tagUUID2);
+
+		// == go ==
+		Map<String, List<Tag>> tagsForLinks = this.classUnderTest.getTagsForLinks(Arrays.asList(linkUUID1,
+				linkUUID2, linkUUID3));
+
+		// == verify ==
+		assertEquals(3, tagsForLinks.size());
+		assertEquals(2, tagsForLinks.get(linkUUID1).size());
+		assertEquals(1, tagsForLinks.get(linkUUID2).size());
+		assertEquals("Tag2", tagsForLinks.get(linkUUID2).get(0).getName());
+		assertEquals(0, tagsForLinks.get(linkUUID3).size());
+	}
+
+	@Test
+	public void shouldNotifyListenersAboutSavedAndDeletedLinks() {
+		// == prepare ==
+		List<String> savedLinks = new ArrayList<String>();
+		List<String> deletedLinks = new ArrayList<String>();
+		PersistenceListener listener = new PersistenceListener() {
+			@Override
+			public void linkSaved(String linkUUID) {
+				savedLinks.add(linkUUID);
+			}
+
+			@Override
+			public void linkDeleted(String linkUUID) {
+				deletedLinks.add(linkUUID);
+			}
+
+			@Override
+			public void tagSaved(String tagUUID) {
+			}
+
+			@Override
+			public void tagDeleted(String tagUUID) {
+			}
+		};
+		this.classUnderTest.addPersistenceListener(listener);
+
+		// == go ==
+		String linkUUID1 = this.classUnderTest.addLink("Neo4j-Tutorial", "http://neo4j.com/tutorial", "Tutorial");
+		String linkUUID2 = this.classUnderTest.addLink("Neo4j-Tutorial-Web", "http://neo4j.com/web", "Web");
+		this.classUnderTest.addLink("Linux-Magazin", "http://linux-magazin.com", "my linux magazin");
+		this.classUnderTest.deleteLink(LinkProperty.NAME, "Tutorial", DeletionMode.SOFT);
+		this.classUnderTest.removePersistenceListener(listener);
+
+		// == verify ==
+		assertEquals(3, savedLinks.size());
+		assertEquals(2, deletedLinks.size());
+		assertTrue(deletedLinks.containsAll(Arrays.asList(linkUUID1, linkUUID2)));
+	}
+
+	@Test
+	public void shouldFindLinksByCaseInsensitiveInfix() {
+		// == prepare ==
+		this.classUnderTest.addLink("Linux-Magazin", "http://linux-magazin.com", "my linux magazin");
+		this.classUnderTest.addLink("Apple-Talk", "http://appletalk.com", "Apple-Talk");
+		String grafanaUUID = this.classUnderTest.addLink("Grafana", "http://monitoring.example.com", "Dashboards");
+
+		// == go & verify ==
+		assertEquals(1, this.classUnderTest.searchLinks("UX").size());
+		assertEquals(1, this.classUnderTest.searchLinks("xMAG").size());
+		assertEquals(3, this.classUnderTest.searchLinks("").size());
+		assertEquals(1, this.classUnderTest.searchLinks("monitoring").size());
+		assertEquals(0, this.classUnderTest.searchLinks("lemon").size());
+
+		this.classUnderTest.setLinkPropertyValue(grafanaUUID, Link.NAME, "Prometheus");
+		assertEquals(0, this.classUnderTest.searchLinks(LinkProperty.NAME, "rafan").size());
+		assertEquals(1, this.classUnderTest.searchLinks(LinkProperty.NAME, "metheu").size());
+	}
+
+	@Test
+	public void shouldWriteCountedClicksOnFlush() {
+		// == prepare ==
+		String linkUUID = this.classUnderTest.addLink("Jenkins", "http://ci.example.com", "Builds");
+		String tagUUID = this.classUnderTest.addTag("Tools", "Developer tools");
+
+		// == go ==
+		this.classUnderTest.incrementLinkClick(linkUUID);
+		this.classUnderTest.incrementLinkClick(linkUUID);
+		this.classUnderTest.incrementLinkClick(linkUUID);
+		this.classUnderTest.incrementTagClick("Tools");
+		this.classUnderTest.flushClicks();
+
+		// == verify ==
+		assertThat(this.classUnderTest.getLinkByUUID(linkUUID).getClicks(), is(3));
+		assertThat(this.classUnderTest.getTagByUUID(tagUUID).getClicks(), is(1));
+	}
+
+	@Test
+	public void shouldKeepTheClicksOfATagRenamedBeforeTheFlush() {
+		// == prepare ==
+		String tagUUID = this.classUnderTest.addTag("Monitoring", "Dashboards");
+
+		// == go ==
+		this.classUnderTest.incrementTagClick("Monitoring");
+		this.classUnderTest.updateTag(TagProperty.NAME, "Monitoring", "Observability");
+		this.classUnderTest.addTag("Monitoring", "Another tag of the old name");
+		this.classUnderTest.flushClicks();
+
+		// == verify ==
+		assertThat(this.classUnderTest.getTagByUUID(tagUUID).getClicks(), is(1));
+		assertThat(this.classUnderTest.searchTags(TagProperty.NAME, "Monitoring").get(0).getClicks(), is(0));
+	}
+
+	@Test
+	public void shouldNotifyFlushedClicksAsClicksOnly() {
+		// == prepare ==
+		String linkUUID = this.classUnderTest.addLink("Sonar", "http://sonar.example.com", "Quality");
+		this.classUnderTest.addTag("Quality", "Code quality");
+		List<String> savedLinks = new ArrayList<String>();
+		List<String> clickedLinks = new ArrayList<String>();
+		List<String> clickedTags = new ArrayList<String>();
+		PersistenceListener listener = new PersistenceListener() {
+			@Override
+			public void linkSaved(String uuid) {
+				savedLinks.add(uuid);
+			}
+
+			@Override
+			public void linkDeleted(String uuid) {
+			}
+
+			@Override
+			public void tagSaved(String uuid) {
+			}
+
+			@Override
+			public void tagDeleted(String uuid) {
+			}
+
+			@Override
+			public void linkClicked(String uuid) {
+				clickedLinks.add(uuid);
+			}
+
+			@Override
+			public void tagClicked(String uuid) {
+				clickedTags.add(uuid);
+			}
+		};
+		this.classUnderTest.addPersistenceListener(listener);
+
+		// == go ==
+		this.classUnderTest.incrementLinkClick(linkUUID);
+		this.classUnderTest.incrementTagClick("Quality");
+		this.classUnderTest.flushClicks();
+		this.classUnderTest.removePersistenceListener(listener);
+
+		// == verify ==
+		assertTrue(savedLinks.isEmpty());
+		assertEquals(Arrays.asList(linkUUID), clickedLinks);
+		assertEquals(1, clickedTags.size());
+		assertThat(this.classUnderTest.getLinkByUUID(linkUUID).getClicks(), is(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldFailToCountClicksOfUnknownLink() {
+		this.classUnderTest.incrementLinkClick("no-such-uuid");
+	}
+
+	@Test
+	public void shouldWriteAllChangesOfABatchOnCommit() {
+		// == prepare ==
+		String oldTagUUID = this.classUnderTest.addTag("Old", "to be removed");
+		String linkUUID = this.classUnderTest.addLink("Wiki", "http://wiki.example.com", "Wiki");
+		this.classUnderTest.addTagToLink(linkUUID, oldTagUUID);
+		Batch batch = this.classUnderTest.batch();
+
+		// == go ==
+		String newTagUUID = batch.addTag("New", "added in the batch");
+		String newLinkUUID = batch.addLink("Issues", "http://issues.example.com", "Issues");
+		batch.addTagToLink(newLinkUUID, newTagUUID);
+		batch.setLinkPropertyValue(linkUUID, Link.NAME, "Knowledge Base");
+		batch.addTagToLink(linkUUID, newTagUUID);
+		batch.removeTagFromLink(linkUUID, oldTagUUID);
+
+		// == verify ==
+		assertNull(this.classUnderTest.getLinkByUUID(newLinkUUID));
+		batch.commit();
+		assertThat(this.classUnderTest.getLinkByUUID(linkUUID).getName(), is("Knowledge Base"));
+		assertThat(this.classUnderTest.getLinkByUUID(newLinkUUID).getUrl(), is("http://issues.example.com"));
+		List<Tag> tags = this.classUnderTest.getTagsForLink(linkUUID);
+		assertThat(tags.size(), is(1));
+		assertThat(tags.get(0).getUuid(), is(newTagUUID));
+		assertThat(this.classUnderTest.getTagsForLink(newLinkUUID).size(), is(1));
+	}
+
+	@Test
+	public void shouldWriteNothingIfAChangeOfTheBatchFails() {
+		// == prepare ==
+		Batch batch = this.classUnderTest.batch();
+		String linkUUID = batch.addLink("Monitoring", "http://monitoring.example.com", "Monitoring");
+		batch.setLinkPropertyValue("no-such-uuid", Link.NAME, "Missing");
+
+		// == go ==
+		try {
+			batch.commit();
+			fail("the link does not exist");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// == verify ==
+		assertNull(this.classUnderTest.getLinkByUUID(linkUUID));
+	}
+
+	@Test
+	public void shouldImportLinksWithTagsFromJsonAndCsv() throws Exception {
+		// == prepare ==
+		GraphDatabaseService graphDb = new TestGraphDatabaseFactory().newImpermanentDatabase();
+		try {
+			PersistenceGatewayImpl gateway = new PersistenceGatewayImpl(graphDb);
+			gateway.createIndexesAndConstraints();
+			String json = "[{\"name\": \"Jira\", \"url\": \"http://jira.example.com\", \"tags\": [\"Work\", \"Issues\"]},"
+					+ " {\"name\": \"Wiki\", \"url\": \"http://wiki.example.com\", \"title\": \"Wiki\", \"tags\": [\"Work\"]},"
+					+ " {\"name\": \"\", \"url\": \"http://nameless.example.com\"}]";
+			String csv = "name,url,title,tags\n" + "Mail,http://mail.example.com,Mail,Work;Private\n";
+			BulkImporter importer = new BulkImporter(graphDb, 2);
+
+			// == go ==
+			BulkImporter.Statistics fromJson = importer.importLinks(new StringReader(json), BulkImporter.Format.JSON);
+			BulkImporter.Statistics fromCsv = importer.importLinks(new StringReader(csv), BulkImporter.Format.CSV);
+
+			// == verify ==
+			assertThat(fromJson.getLinks(), is(2));
+			assertThat(fromJson.getTags(), is(2));
+			assertThat(fromJson.getTaggings(), is(3));
+			assertThat(fromJson.getSkipped(), is(1));
+			assertThat(fromCsv.getLinks(), is(1));
+			// "Work" exists already
+			assertThat(fromCsv.getTags(), is(1));
+			assertThat(gateway.getAllLinks().size(), is(3));
+			assertThat(gateway.getAllTags().size(), is(3));
+			assertThat(gateway.searchLinksForTagName("Work").values().iterator().next().size(), is(3));
+		} finally {
+			graphDb.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldExportLinksAsJsonLinesAndResumeAfterCursor() throws Exception {
+		// == prepare ==
+		GraphDatabaseService graphDb = new TestGraphDatabaseFactory().newImpermanentDatabase();
+		try {
+			PersistenceGatewayImpl gateway = new PersistenceGatewayImpl(graphDb);
+			gateway.createIndexesAndConstraints();
+			String tagUUID = gateway.addTag("Work", "");
+			gateway.addTagToLink(gateway.addLink("Jira", "http://jira.example.com", "Jira"), tagUUID);
+			gateway.addLink("Wiki", "http://wiki.example.com", "Wiki");
+			gateway.addLink("Mail", "http://mail.example.com", "Mail");
+			BulkExporter exporter = new BulkExporter(graphDb, 2);
+
+			// == go ==
+			StringWriter all = new StringWriter();
+			long cursor = exporter.exportLinks(all, BulkExporter.START);
+			StringWriter rest = new StringWriter();
+			long sameCursor = exporter.exportLinks(rest, cursor);
+
+			// == verify ==
+			String[] lines = all.toString().split("\n");
+			assertThat(lines.length, is(4));
+			assertTrue(lines[0].startsWith("{\"type\":\"tag\","));
+			assertTrue(lines[1].contains("\"tagUuids\":[\"" + tagUUID + "\"],\"tags\":[\"Work\"]"));
+			assertTrue(lines[3].contains("\"id\":" + cursor));
+			assertThat(rest.toString(), is(""));
+			assertThat(sameCursor, is(cursor));
+
+			// resume after the first link line, without the tags
+			long firstId = Long.parseLong(lines[1].replaceAll("^\\{\"type\":\"link\",\"id\":(\\d+),.*$", "$1"));
+			StringWriter resumed = new StringWriter();
+			exporter.exportLinks(resumed, firstId);
+			assertThat(resumed.toString().split("\n").length, is(2));
+		} finally {
+			graphDb.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldRestoreAnExportWithUuidsAndClicks() throws Exception {
+		// == prepare ==
+		GraphDatabaseService source = new TestGraphDatabaseFactory().newImpermanentDatabase();
+		GraphDatabaseService target = new TestGraphDatabaseFactory().newImpermanentDatabase();
+		try {
+			PersistenceGatewayImpl exported = new PersistenceGatewayImpl(source);
+			exported.createIndexesAndConstraints();
+			String workUUID = exported.addTag("Work", "Things to do");
+			String unusedUUID = exported.addTag("Unused", "Tags nothing");
+			String jiraUUID = exported.addLink("Jira", "http://jira.example.com", "Jira");
+			exported.addTagToLink(jiraUUID, workUUID);
+			exported.incrementLinkClick(jiraUUID);
+			exported.incrementLinkClick(jiraUUID);
+			exported.incrementTagClick("Work");
+			exported.flushClicks();
+			StringWriter backup = new StringWriter();
+			new BulkExporter(source, 1).exportLinks(backup, BulkExporter.START);
+
+			PersistenceGatewayImpl restored = new PersistenceGatewayImpl(target);
+			restored.createIndexesAndConstraints();
+			BulkImporter importer = new BulkImporter(target, 1);
+
+			// == go ==
+			BulkImporter.Statistics statistics = importer.importLinks(new StringReader(backup.toString()),
+					BulkImporter.Format.JSON);
+			BulkImporter.Statistics again = importer.importLinks(new StringReader(backup.toString()),
+					BulkImporter.Format.JSON);
+
+			// == verify ==
+			assertThat(statistics.getLinks(), is(1));
+			assertThat(statistics.getTags(), is(2));
+			assertThat(statistics.getTaggings(), is(1));
+			assertThat(again.getLinks(), is(0));
+			assertThat(again.getSkipped(), is(3));
+			long now = System.currentTimeMillis();
+			assertThat(restored.getLinkByUUID(jiraUUID).getClicks(), is(2));
+			assertThat(restored.getClickHistory(jiraUUID).getHotness(now),
+					is(exported.getClickHistory(jiraUUID).getHotness(now)));
+			Tag work = restored.getTagByUUID(workUUID);
+			assertThat(work.getDescription(), is("Things to do"));
+			assertThat(work.getClicks(), is(1));
+			assertThat(restored.getTagByUUID(unusedUUID).getName(), is("Unused"));
+			assertThat(restored.getTagsForLink(jiraUUID).get(0).getUuid(), is(workUUID));
+		} finally {
+			source.shutdown();
+			target.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldPageLinksAndTagsWithCursors() {
+		// == prepare ==
+		this.classUnderTest.addLink("Paging-One", "http://paging.org/1", "");
+		this.classUnderTest.addLink("Paging-Two", "http://paging.org/2", "");
+		this.classUnderTest.addLink("Paging-Three", "http://paging.org/3", "");
+		this.classUnderTest.addTag("PagingTag1", "");
+		this.classUnderTest.addTag("PagingTag2", "");
+
+		// == go ==
+		Page<Link> first = this.classUnderTest.searchLinks("paging", 2, null);
+		Page<Link> second = this.classUnderTest.searchLinks("paging", 2, first.getNextCursor());
+		Page<Link> all = this.classUnderTest.getAllLinks(10, null);
+		Page<Tag> tags = this.classUnderTest.searchTags(TagProperty.NAME, "PagingTag", 1, null);
+
+		// == verify ==
+		assertThat(first.getItems().size(), is(2));
+		assertTrue(first.hasNext());
+		assertThat(second.getItems().size(), is(1));
+		assertFalse(second.hasNext());
+		assertThat(second.getItems().get(0).getName(), is("Paging-Three"));
+		assertThat(all.getItems().size(), is(3));
+		assertFalse(all.hasNext());
+		assertThat(tags.getItems().size(), is(1));
+		assertTrue(tags.hasNext());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldFailToPageWithInvalidCursor() {
+		this.classUnderTest.getAllLinks(10, "not a cursor");
+	}
+
+	@Test
+	public void shouldServeCachedLinksUntilTheyAreSaved() {
+		// == prepare ==
+		String linkUUID = this.classUnderTest.addLink("Cached", "http://cache.org", "");
+		long hitsBefore = this.classUnderTest.getEntityCacheStatistics().getHits();
+
+		// == go ==
+		Link loaded = this.classUnderTest.getLinkByUUID(linkUUID);
+		Link cached = this.classUnderTest.getLinkByUUID(linkUUID);
+		this.classUnderTest.setLinkPropertyValue(linkUUID, Link.NAME, "Renamed");
+		Link reloaded = this.classUnderTest.getLinkByUUID(linkUUID);
+
+		// == verify ==
+		assertTrue(loaded == cached);
+		assertThat(this.classUnderTest.getEntityCacheStatistics().getHits(), is(hitsBefore + 1));
+		assertThat(reloaded.getName(), is("Renamed"));
+	}
+
+	@Test
+	public void shouldRecordFlushedClicksInTheClickHistory() {
+		// == prepare ==
+		String linkUUID = this.classUnderTest.addLink("Hot", "http://hot.org", "");
+		this.classUnderTest.incrementLinkClick(linkUUID);
+		this.classUnderTest.incrementLinkClick(linkUUID);
+
+		// == go ==
+		this.classUnderTest.flushClicks();
+
+		// == verify ==
+		long now = System.currentTimeMillis();
+		ClickHistory history = this.classUnderTest.getClickHistory(linkUUID);
+		assertThat(history.getHourlyClicks(now)[ClickHistory.HOURS - 1], is(2));
+		assertThat(history.getDailyClicks(now)[ClickHistory.DAYS - 1], is(2));
+		assertEquals(2.0, this.classUnderTest.getLinkByUUID(linkUUID).getHotness(now), 0.01);
+		// a week later half of the hotness is left
+		assertEquals(1.0, history.getHotness(now + Link.HOTNESS_HALF_LIFE_MILLIS), 0.01);
+	}
+
 	@Test
 	public void testSearchLinksForTagName() {
 		// == prepare ==